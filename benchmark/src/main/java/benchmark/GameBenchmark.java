@@ -0,0 +1,99 @@
+package benchmark;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ChessGame operations a server runs on every move: generating valid
+ * moves, playing a move and working out check, checkmate and stalemate, all
+ * for the team whose turn it is.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"start", "kiwipete", "endgame", "promotion", "middlegame", "mate", "stalemate"})
+    public String position;
+
+    private ChessGame game;
+    private ChessGame.TeamColor turn;
+    private List<ChessPosition> pieces;
+    private ChessMove[] legalMoves;
+    private int nextMove;
+    private final MoveList moves = new MoveList();
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        turn = game.getTeamTurn();
+        pieces = game.getBoard().getPositions(turn);
+        MoveList all = new MoveList();
+        game.validMoves(turn, all);
+        legalMoves = all.toChessMoves().toArray(new ChessMove[0]);
+    }
+
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (ChessPosition piece : pieces) {
+            blackhole.consume(game.validMoves(piece));
+        }
+    }
+
+    /**
+     * The same moves as validMoves above, grouped by piece in one call instead
+     * of a collection per piece
+     */
+    @Benchmark
+    public TeamMoves allValidMoves() {
+        return game.allValidMoves(turn);
+    }
+
+    @Benchmark
+    public int validMovesIntoList() {
+        moves.clear();
+        game.validMoves(turn, moves);
+        return moves.size();
+    }
+
+    /**
+     * Plays each legal move in turn through the validating makeMove and takes
+     * it back, so the position is the same for every invocation
+     */
+    @Benchmark
+    public void makeMove() throws InvalidMoveException {
+        if (legalMoves.length == 0) {
+            return;
+        }
+        game.makeMove(legalMoves[nextMove]);
+        game.unmakeMove();
+        nextMove = nextMove + 1 == legalMoves.length ? 0 : nextMove + 1;
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(turn);
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(turn);
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        return game.isInStalemate(turn);
+    }
+
+    @Benchmark
+    public GameStatus getStatus() {
+        return game.getStatus();
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import chess.ChessGame;
+import engine.ParallelSearch;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-depth searches with one and more threads. The score is searches per
+ * second, so the speedup of n threads is their score over the score of one;
+ * the nodes counter is the nodes per second of all the threads together.
+ * <p>
+ * Run on its own ({@code java -cp benchmarks.jar
+ * benchmark.ParallelSearchBenchmark [position]}) it prints both as a table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelSearchBenchmark {
+
+    @Param({"kiwipete", "middlegame"})
+    public String position;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"6"})
+    public int depth;
+
+    private ChessGame game;
+    private SearchLimits limits;
+    private ParallelSearch search;
+
+    /**
+     * Nodes searched, reported per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        limits = SearchLimits.depth(depth);
+        search = new ParallelSearch(threads, new TranspositionTable(64));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        search.getTable().clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        search.close();
+    }
+
+    @Benchmark
+    public SearchResult search(Nodes counter) {
+        SearchResult result = search.search(game, limits);
+        counter.nodes += result.nodes();
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String position = args.length > 0 ? args[0] : "kiwipete";
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(ParallelSearchBenchmark.class.getSimpleName())
+                .param("position", position)
+                .build()).run();
+
+        Map<Integer, RunResult> byThreads = new TreeMap<>();
+        for (RunResult result : results) {
+            byThreads.put(Integer.parseInt(result.getParams().getParam("threads")), result);
+        }
+        double single = byThreads.get(1).getPrimaryResult().getScore();
+        System.out.printf("%n%s, depth %s%n%8s %12s %12s %8s%n", position,
+                byThreads.get(1).getParams().getParam("depth"), "threads", "searches/s", "nodes/s", "speedup");
+        byThreads.forEach((threads, result) -> {
+            Result<?> nodes = result.getSecondaryResults().get("nodes");
+            double score = result.getPrimaryResult().getScore();
+            System.out.printf("%8d %12.2f %12.0f %7.2fx%n", threads, score, nodes.getScore(), score / single);
+        });
+    }
+}
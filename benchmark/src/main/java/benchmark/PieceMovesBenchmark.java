@@ -0,0 +1,67 @@
+package benchmark;
+
+import chess.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pseudo-legal move generation for every piece of one type in a position,
+ * through both the Collection and the MoveList forms of pieceMoves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceMovesBenchmark {
+
+    @Param({"start", "kiwipete", "endgame", "promotion", "middlegame"})
+    public String position;
+
+    @Param({"KING", "QUEEN", "BISHOP", "KNIGHT", "ROOK", "PAWN"})
+    public ChessPiece.PieceType pieceType;
+
+    private ChessBoard board;
+    private ChessPosition[] positions;
+    private ChessPiece[] pieces;
+    private final MoveList moves = new MoveList();
+
+    @Setup
+    public void setUp() {
+        board = Positions.load(position).getBoard();
+        List<ChessPosition> found = new ArrayList<>();
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPosition square : board.getPositions(color)) {
+                if (board.getPiece(square).getPieceType() == pieceType) {
+                    found.add(square);
+                }
+            }
+        }
+        positions = found.toArray(new ChessPosition[0]);
+        pieces = new ChessPiece[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            pieces[i] = board.getPiece(positions[i]);
+        }
+    }
+
+    @Benchmark
+    public void pieceMoves(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            blackhole.consume(pieces[i].pieceMoves(board, positions[i]));
+        }
+    }
+
+    @Benchmark
+    public int pieceMovesIntoList() {
+        moves.clear();
+        for (int i = 0; i < positions.length; i++) {
+            pieces[i].pieceMoves(board, positions[i], moves);
+        }
+        return moves.size();
+    }
+}
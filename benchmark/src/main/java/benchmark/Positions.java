@@ -0,0 +1,35 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.Fen;
+
+import java.util.Map;
+
+/**
+ * The standard positions benchmarks are run on, by name so they can be used as
+ * a JMH {@code @Param}. Most come from the Chess Programming Wiki perft suite,
+ * which between them exercise castling, en passant, promotion and pins.
+ */
+final class Positions {
+
+    static final Map<String, String> FENS = Map.of(
+            "start", Fen.START,
+            "kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "promotion", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "mate", "r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4",
+            "stalemate", "7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"
+    );
+
+    private Positions() {
+    }
+
+    static ChessGame load(String name) {
+        String fen = FENS.get(name);
+        if (fen == null) {
+            throw new IllegalArgumentException("Unknown position: " + name);
+        }
+        return Fen.parse(fen);
+    }
+}
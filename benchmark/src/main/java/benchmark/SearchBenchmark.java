@@ -0,0 +1,51 @@
+package benchmark;
+
+import chess.ChessGame;
+import engine.Engine;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-depth search by the computer player, so changes to the engine can be
+ * compared by the time a search of the same depth takes. Each search starts
+ * with an empty transposition table, as a search of a new position would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"start", "kiwipete", "endgame", "middlegame"})
+    public String position;
+
+    @Param({"5"})
+    public int depth;
+
+    private ChessGame game;
+    private SearchLimits limits;
+    private final TranspositionTable table = new TranspositionTable(16);
+    private final Engine engine = new Engine(table);
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        limits = SearchLimits.depth(depth);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        table.clear();
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return engine.search(game, limits);
+    }
+}
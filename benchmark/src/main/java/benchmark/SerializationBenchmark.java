@@ -0,0 +1,72 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.Fen;
+import chess.GameCodec;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading a whole game with reflective Gson, as the server did,
+ * against the FEN and binary codecs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"start", "kiwipete", "endgame"})
+    public String position;
+
+    private final Gson gson = new Gson();
+    private ChessGame game;
+    private String json;
+    private String fen;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        json = gson.toJson(game);
+        fen = Fen.format(game);
+        binary = GameCodec.encode(game);
+    }
+
+    @Benchmark
+    public String gsonWrite() {
+        return gson.toJson(game);
+    }
+
+    @Benchmark
+    public ChessGame gsonRead() {
+        ChessGame read = gson.fromJson(json, ChessGame.class);
+        // the board indexes itself lazily; count that as part of reading
+        read.getBoard().getOccupancy();
+        return read;
+    }
+
+    @Benchmark
+    public String fenWrite() {
+        return Fen.format(game);
+    }
+
+    @Benchmark
+    public ChessGame fenRead() {
+        return Fen.parse(fen);
+    }
+
+    @Benchmark
+    public byte[] binaryWrite() {
+        return GameCodec.encode(game);
+    }
+
+    @Benchmark
+    public ChessGame binaryRead() {
+        return GameCodec.decode(binary);
+    }
+}
@@ -64,6 +64,7 @@ public class Client {
       case "highlight" -> highlightMoves(params);
       case "leave" -> leaveGame();
       case "resign" -> resignGame();
+      case "computer" -> playComputer();
       case "help" -> help();
       default -> invalidInput("");
     };
@@ -216,6 +217,15 @@ public class Client {
     return "";
   }
 
+  private String playComputer() {
+    try {
+      webSocketFacade.playComputer(authToken, currentGameId);
+    } catch (ResponseException e) {
+      printErrorMessage(e.getMessage());
+    }
+    return "";
+  }
+
   private String joinGame(String[] params) {
     try {
       var joinRequest = parseJoinParams(params);
@@ -414,6 +424,7 @@ public class Client {
         System.out.println("Highlight valid moves: 'highlight' <START POSITION>");
         System.out.println("Leave Game: 'leave' ");
         System.out.println("Resign the game: 'resign'");
+        System.out.println("Play against the computer in the empty seat: 'computer'");
         System.out.println("See instructions: 'help'");
       }
       case Observer -> {
@@ -84,4 +84,13 @@ public class WebSocketFacade extends Endpoint {
       throw new ResponseException(500, e.getMessage());
     }
   }
+
+  public void playComputer(String authToken, String currentGameId) throws ResponseException {
+    try {
+      UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.PLAY_COMPUTER, authToken, Integer.parseInt(currentGameId));
+      this.session.getBasicRemote().sendText(new Gson().toJson(command));
+    } catch (IOException e) {
+      throw new ResponseException(500, e.getMessage());
+    }
+  }
 }
@@ -1,7 +1,12 @@
 package dataaccess;
 
+import chess.ChessBoard;
 import chess.ChessGame;
+import chess.GameCodec;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import exception.ResponseException;
 import model.AuthData;
 import model.GameData;
@@ -12,6 +17,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 
 import static java.sql.Types.NULL;
@@ -125,8 +131,7 @@ public class SqlDataAccess implements DataAccess {
   public GameData createGame(String gameName) throws ResponseException {
     var statement = "INSERT INTO game (name, game) VALUES (?, ?);";
     var game = new ChessGame();
-    var jsonGame = new Gson().toJson(game, ChessGame.class);
-    var id = executeUpdate(statement, gameName, jsonGame);
+    var id = executeUpdate(statement, gameName, writeGame(game));
 
     return new GameData(Integer.toString(id), gameName, null, null, game);
   }
@@ -155,13 +160,98 @@ public class SqlDataAccess implements DataAccess {
     var gameName = results.getString("name");
     var whiteUser = results.getString("white_username");
     var blackUser = results.getString("black_username");
-    var gameJson = results.getString("game");
-
-    var game = new Gson().fromJson(gameJson, ChessGame.class);
+    var game = readGame(results.getString("game"));
 
     return new GameData(Integer.toString(gameID), whiteUser, blackUser, gameName, game);
   }
 
+  // Games are stored as Base64 of their GameCodec form. Rows written before
+  // that hold Gson JSON, which always starts with '{' and is still read.
+  private String writeGame(ChessGame game) {
+    return Base64.getEncoder().encodeToString(GameCodec.encode(game));
+  }
+
+  private ChessGame readGame(String storedGame) {
+    if (storedGame.startsWith("{")) {
+      return readLegacyGame(storedGame);
+    }
+    return GameCodec.decode(Base64.getDecoder().decode(storedGame));
+  }
+
+  /**
+   * Reads a game stored as Gson JSON. Those rows kept castling and en passant
+   * in each piece's alreadyMoved and enPassantStatus flags, which pieces no
+   * longer have, so the board's rights are worked out from the flags: a right
+   * stays while its king and rook have never moved, and a pawn flagged by the
+   * team that just moved can be taken en passant.
+   */
+  static ChessGame readLegacyGame(String json) {
+    JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+    ChessGame game = new Gson().fromJson(root, ChessGame.class);
+    var squares = root.getAsJsonObject("board").getAsJsonArray("squares");
+    ChessGame.TeamColor justMoved = game.getTeamTurn() == ChessGame.TeamColor.WHITE
+            ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+
+    int kingRights = 0;
+    int rookRights = 0;
+    int enPassantSquare = -1;
+    for (int row = 0; row < 8; row++) {
+      var columns = squares.get(row).getAsJsonArray();
+      for (int column = 0; column < 8; column++) {
+        JsonElement square = columns.get(column);
+        if (square.isJsonNull()) {
+          continue;
+        }
+        JsonObject piece = square.getAsJsonObject();
+        var color = ChessGame.TeamColor.valueOf(piece.get("pieceColor").getAsString());
+        String type = piece.get("type").getAsString();
+        if (!flag(piece, "alreadyMoved")) {
+          if (type.equals("KING")) {
+            kingRights |= unmovedRights(color, type, row, column);
+          } else {
+            rookRights |= unmovedRights(color, type, row, column);
+          }
+        }
+        // only a pawn that could have just made a double move counts; a stale
+        // flag elsewhere is ignored
+        int doubleMoveRow = color == ChessGame.TeamColor.WHITE ? 3 : 4;
+        if (type.equals("PAWN") && color == justMoved && row == doubleMoveRow && flag(piece, "enPassantStatus")) {
+          // the square the pawn skipped, one row back towards its own side
+          enPassantSquare = (color == ChessGame.TeamColor.WHITE ? row - 1 : row + 1) * 8 + column;
+        }
+      }
+    }
+    // a right needs both its king and its rook unmoved
+    game.getBoard().setCastlingRights(kingRights & rookRights);
+    game.getBoard().setEnPassantSquare(enPassantSquare);
+    return game;
+  }
+
+  /**
+   * @return the castling rights an unmoved king or rook on the square keeps
+   * alive
+   */
+  private static int unmovedRights(ChessGame.TeamColor color, String type, int row, int column) {
+    int homeRow = color == ChessGame.TeamColor.WHITE ? 0 : 7;
+    int right = color == ChessGame.TeamColor.WHITE ? ChessBoard.WHITE_RIGHT_CASTLE : ChessBoard.BLACK_RIGHT_CASTLE;
+    int left = color == ChessGame.TeamColor.WHITE ? ChessBoard.WHITE_LEFT_CASTLE : ChessBoard.BLACK_LEFT_CASTLE;
+    if (row != homeRow) {
+      return 0;
+    }
+    if (type.equals("KING") && column == 4) {
+      return right | left;
+    }
+    if (type.equals("ROOK")) {
+      return column == 7 ? right : column == 0 ? left : 0;
+    }
+    return 0;
+  }
+
+  private static boolean flag(JsonObject piece, String name) {
+    JsonElement value = piece.get(name);
+    return value != null && value.getAsBoolean();
+  }
+
   @Override
   public Collection<GameData> listGames() throws ResponseException {
     var games = new ArrayList<GameData>();
@@ -183,9 +273,8 @@ public class SqlDataAccess implements DataAccess {
   @Override
   public GameData updateGame(String gameID, GameData newGameData) throws ResponseException {
     var statement = "UPDATE game SET name = ?, white_username = ?, black_username = ?, game = ? WHERE id = ?";
-    var gameJson = new Gson().toJson(newGameData.game(), ChessGame.class);
-
-    executeUpdate(statement, newGameData.gameName(), newGameData.whiteUsername(), newGameData.blackUsername(), gameJson, gameID);
+    executeUpdate(statement, newGameData.gameName(), newGameData.whiteUsername(), newGameData.blackUsername(),
+            writeGame(newGameData.game()), gameID);
     return newGameData;
   }
 
@@ -10,6 +10,7 @@ import servicehelpers.LoginRequest;
 import servicehelpers.LoginResult;
 import servicehelpers.LogoutRequest;
 import servicehelpers.RegisterRequest;
+import websocket.BotPlayer;
 
 import java.security.SecureRandom;
 import java.util.Base64;
@@ -41,7 +42,7 @@ public class UserService implements Service {
     }
 
     UserData user = database.getUser(request.username());
-    if (user != null) {
+    if (user != null || request.username().equals(BotPlayer.USERNAME)) {
       throw new ResponseException(403, "Error: already taken");
     }
     String plainPassword = request.password();
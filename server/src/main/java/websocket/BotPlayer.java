@@ -0,0 +1,162 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.GameCodec;
+import chess.PackedMove;
+import engine.Engine;
+import engine.OpeningBook;
+import engine.SearchLimits;
+import engine.Tablebase;
+import engine.TranspositionTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the moves of the computer player.
+ * <p>
+ * Searches run on a small fixed pool of low priority daemon threads, each with
+ * its own Engine, and each move may use a fixed amount of processor time. However
+ * many computer games are waiting for a move, they never use more processors
+ * than the pool has threads, so the threads serving human players keep theirs.
+ * The engines share one transposition table of a fixed size, so the memory the
+ * computer player uses stays the same however many games it plays.
+ * <p>
+ * If an opening book is given, with the {@value #BOOK_PROPERTY} system property
+ * naming its file, positions in the book are answered from it at once. If
+ * endgame tablebases are given, with the {@value #TABLEBASE_PROPERTY} system
+ * property naming their directory, the endings they cover are played
+ * perfectly. A book or tablebases that cannot be opened are left out with a
+ * warning.
+ */
+public class BotPlayer {
+
+  /**
+   * The username that fills a game seat taken by the computer
+   */
+  public static final String USERNAME = "computer";
+
+  /**
+   * The system property naming the opening book file, if there is one
+   */
+  public static final String BOOK_PROPERTY = "chess.book";
+
+  /**
+   * The system property naming the directory of the endgame tablebases, if
+   * there are any
+   */
+  public static final String TABLEBASE_PROPERTY = "chess.tablebases";
+
+  private static final Logger LOG = LoggerFactory.getLogger(BotPlayer.class);
+
+  private static final long MOVE_CPU_MILLIS = 500;
+  private static final int TABLE_MEGABYTES = 64;
+
+  private final ExecutorService pool;
+  private final TranspositionTable table;
+  private final ThreadLocal<Engine> engines;
+  private final OpeningBook book;
+  private final Tablebase tablebase;
+
+  public BotPlayer() {
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), TABLE_MEGABYTES, openBook(), defaultTablebase());
+  }
+
+  /**
+   * @param threads        searches that may run at once
+   * @param tableMegabytes memory of the transposition table the searches share
+   * @param book           the opening book, or null to always search
+   * @param tablebase      the endgame tablebases, or null to search endings too
+   */
+  public BotPlayer(int threads, int tableMegabytes, OpeningBook book, Tablebase tablebase) {
+    this.book = book;
+    this.tablebase = tablebase;
+    table = new TranspositionTable(tableMegabytes);
+    engines = ThreadLocal.withInitial(() -> new Engine(table, tablebase));
+    pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "bot-player");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  }
+
+  /**
+   * Answers from the opening book if the position is in it, and otherwise
+   * searches for a move in a copy of the game, so the game itself may be
+   * changed while the search runs
+   *
+   * @return the move to play, or null if there is no legal move
+   */
+  public CompletableFuture<ChessMove> chooseMove(ChessGame game) {
+    if (book != null) {
+      int move = book.choose(game, ThreadLocalRandom.current());
+      if (move != Engine.NO_MOVE) {
+        return CompletableFuture.completedFuture(PackedMove.toChessMove(move));
+      }
+    }
+    ChessGame copy = GameCodec.decode(GameCodec.encode(game));
+    return CompletableFuture.supplyAsync(
+            () -> engines.get().search(copy, SearchLimits.cpuTime(MOVE_CPU_MILLIS)).bestMove(), pool);
+  }
+
+  private static OpeningBook openBook() {
+    String path = System.getProperty(BOOK_PROPERTY);
+    if (path == null) {
+      return null;
+    }
+    try {
+      return OpeningBook.open(Path.of(path));
+    } catch (IOException e) {
+      LOG.warn("Cannot open the opening book {}, so every move is searched", path, e);
+      return null;
+    }
+  }
+
+  private static Tablebase openTablebase() {
+    String path = System.getProperty(TABLEBASE_PROPERTY);
+    if (path == null) {
+      return null;
+    }
+    try {
+      return Tablebase.open(Path.of(path));
+    } catch (IOException e) {
+      LOG.warn("Cannot open the endgame tablebases in {}, so endings are searched", path, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return the endgame tablebases named by the {@value #TABLEBASE_PROPERTY}
+   * system property, opened on the first call, or null if there are none
+   */
+  public static Tablebase defaultTablebase() {
+    return DefaultTablebase.TABLEBASE;
+  }
+
+  /**
+   * @return the table the searches share, for its statistics
+   */
+  public TranspositionTable getTable() {
+    return table;
+  }
+
+  /**
+   * @return the endgame tablebases, or null if there are none
+   */
+  public Tablebase getTablebase() {
+    return tablebase;
+  }
+
+  // the holder is only loaded when the tablebases are first asked for
+  private static final class DefaultTablebase {
+    static final Tablebase TABLEBASE = openTablebase();
+  }
+}
@@ -3,8 +3,11 @@ package websocket;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.google.gson.Gson;
 import org.eclipse.jetty.websocket.api.Session;
@@ -16,22 +19,22 @@ import websocket.messages.NotificationMessage;
 
 public class ConnectionHandler {
 
-  private final HashMap<Integer, ArrayList<Connection>> connections = new HashMap<>();
+  // games are handled in parallel, each under its own lock, so the table is shared between threads
+  private final ConcurrentHashMap<Integer, List<Connection>> connections = new ConcurrentHashMap<>();
 
   public void add(Integer gameId, String username, Session session) {
-    var currentConnections = connections.getOrDefault(gameId, new ArrayList<>());
-    currentConnections.add(new Connection(username, session));
-    connections.put(gameId, currentConnections);
+    connections.computeIfAbsent(gameId, id -> new CopyOnWriteArrayList<>()).add(new Connection(username, session));
   }
 
   public void remove(Integer gameId, String username) {
-    var currentConnections = connections.getOrDefault(gameId, new ArrayList<>());
-    currentConnections.removeIf(connection -> Objects.equals(connection.username, username));
-    connections.put(gameId, currentConnections);
+    var currentConnections = connections.get(gameId);
+    if (currentConnections != null) {
+      currentConnections.removeIf(connection -> Objects.equals(connection.username, username));
+    }
   }
 
   public void notification(NotificationMessage message, Integer gameID) throws IOException {
-    var usersToNotify = connections.getOrDefault(gameID, new ArrayList<>());
+    var usersToNotify = connections.getOrDefault(gameID, List.of());
     var removalList = new ArrayList<Connection>();
     for (var user : usersToNotify) {
       if (user.session.isOpen()) {
@@ -46,7 +49,7 @@ public class ConnectionHandler {
     }
   }
   public void notification(NotificationMessage message, Integer gameID, String currentUser) throws IOException {
-    var usersToNotify = connections.getOrDefault(gameID, new ArrayList<>());
+    var usersToNotify = connections.getOrDefault(gameID, List.of());
     var removalList = new ArrayList<Connection>();
     for (var user : usersToNotify) {
       if (user.session.isOpen()) {
@@ -67,6 +70,14 @@ public class ConnectionHandler {
     session.getRemote().sendString(new Gson().toJson(message));
   }
 
+  public void errorMessage(ErrorMessage message, Integer gameID) throws IOException {
+    for (var user : connections.getOrDefault(gameID, List.of())) {
+      if (user.session.isOpen()) {
+        user.send(new Gson().toJson(message));
+      }
+    }
+  }
+
   public void loadGame(LoadGameMessage message, Session session) throws IOException {
     if (session.isOpen()) {
       session.getRemote().sendString(new Gson().toJson(message));
@@ -74,7 +85,7 @@ public class ConnectionHandler {
   }
 
   public void loadGame(LoadGameMessage message, Integer gameID) throws IOException {
-    var users= connections.getOrDefault(gameID, new ArrayList<>());
+    var users= connections.getOrDefault(gameID, List.of());
     var removalList = new ArrayList<Connection>();
     for (var user : users) {
       if (user.session.isOpen()) {
@@ -89,7 +100,7 @@ public class ConnectionHandler {
   }
 
   public Map<Integer, String> remove(Session session) {
-    for (Map.Entry<Integer, ArrayList<Connection>> entry : connections.entrySet()) {
+    for (Map.Entry<Integer, List<Connection>> entry : connections.entrySet()) {
       for (var connection : entry.getValue()) {
         remove(entry.getKey(), connection.username);
         var result = new HashMap<Integer, String>();
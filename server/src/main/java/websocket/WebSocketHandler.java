@@ -3,8 +3,11 @@ package websocket;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPosition;
+import chess.GameStatus;
 import chess.InvalidMoveException;
 import com.google.gson.Gson;
+import engine.Engine;
+import engine.Tablebase;
 import dataaccess.DataAccess;
 import dataaccess.MemoryDataAccess;
 import dataaccess.SqlDataAccess;
@@ -15,6 +18,8 @@ import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
@@ -24,12 +29,21 @@ import websocket.messages.ServerMessage;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @WebSocket
 public class WebSocketHandler {
 
+  private static final Logger LOG = LoggerFactory.getLogger(WebSocketHandler.class);
+
   private final ConnectionHandler connectionHandler;
   private final DataAccess dataAccess;
+  // made when a game first needs the computer, since its table is large
+  private volatile BotPlayer botPlayer;
+  // the commands of one game, and the computer's moves in it, run one at a
+  // time; different games run in parallel
+  private final ConcurrentHashMap<Integer, Object> gameLocks = new ConcurrentHashMap<>();
 
   public WebSocketHandler() {
     DataAccess dataAccess1;
@@ -49,14 +63,25 @@ public class WebSocketHandler {
     if (command.getCommandType() == UserGameCommand.CommandType.MAKE_MOVE) {
       moveCommand = new Gson().fromJson(message, MakeMoveCommand.class);
     }
-    switch (command.getCommandType()) {
-      case CONNECT -> connect(session, command);
-      case LEAVE -> leave(command);
-      case MAKE_MOVE -> makeMove(session, moveCommand);
-      case RESIGN -> resign(session, command);
+    synchronized (lockFor(command.getGameID())) {
+      switch (command.getCommandType()) {
+        case CONNECT -> connect(session, command);
+        case LEAVE -> leave(command);
+        case MAKE_MOVE -> makeMove(session, moveCommand);
+        case RESIGN -> resign(session, command);
+        case PLAY_COMPUTER -> playComputer(session, command);
+      }
     }
   }
 
+  /**
+   * @return the lock that serializes the game's commands and computer moves
+   */
+  private Object lockFor(Integer gameID) {
+    // a command without a game fails verification; it has nothing to share
+    return gameID == null ? new Object() : gameLocks.computeIfAbsent(gameID, id -> new Object());
+  }
+
   @OnWebSocketError
   public void onError(Session session, Throwable throwable) throws ResponseException {
     session.close();
@@ -66,23 +91,26 @@ public class WebSocketHandler {
       return;
     }
 
-    GameData gameData = null;
+    Integer gameID = null;
     for (var r : result.keySet()) {
-      gameData=dataAccess.getGame(String.valueOf(r));
+      gameID = r;
     }
 
-    var newGameData = gameData;
-    for (var username : result.values()) {
-      if (gameData.whiteUsername() != null && gameData.whiteUsername().equals(username)) {
-        newGameData = new GameData(gameData.gameID(),
-                null, gameData.blackUsername(), gameData.gameName(), gameData.game());
-      }
-      if (gameData.blackUsername() != null && gameData.blackUsername().equals(username)) {
-        newGameData = new GameData(gameData.gameID(),
-                gameData.whiteUsername(), null, gameData.gameName(), gameData.game());
+    synchronized (lockFor(gameID)) {
+      GameData gameData = dataAccess.getGame(String.valueOf(gameID));
+      var newGameData = gameData;
+      for (var username : result.values()) {
+        if (gameData.whiteUsername() != null && gameData.whiteUsername().equals(username)) {
+          newGameData = new GameData(gameData.gameID(),
+                  null, gameData.blackUsername(), gameData.gameName(), gameData.game());
+        }
+        if (gameData.blackUsername() != null && gameData.blackUsername().equals(username)) {
+          newGameData = new GameData(gameData.gameID(),
+                  gameData.whiteUsername(), null, gameData.gameName(), gameData.game());
+        }
       }
+      dataAccess.updateGame(newGameData.gameID(), newGameData);
     }
-    dataAccess.updateGame(newGameData.gameID(), newGameData);
   }
 
 
@@ -141,6 +169,7 @@ public class WebSocketHandler {
       connectionHandler.notification(moveMadeMessage, moveCommand.getGameID(), authData.username());
 
       checkGameStatus(newGameData);
+      scheduleBotMove(newGameData);
 
     } catch (ResponseException e) {
       ErrorMessage errorMessage =
@@ -153,45 +182,181 @@ public class WebSocketHandler {
     }
   }
 
-  private void checkGameStatus(GameData game) throws ResponseException, IOException {
-    if (game.game().isInStalemate(ChessGame.TeamColor.WHITE)
-            || game.game().isInStalemate(ChessGame.TeamColor.BLACK)) {
-      game.game().setGameOver(true);
-      dataAccess.updateGame(game.gameID(), game);
-      var stalemateMessage = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-              "Stalemate: the game ended in a draw");
-      connectionHandler.notification(stalemateMessage, Integer.valueOf(game.gameID()));
-      return;
+  private void playComputer(Session session, UserGameCommand command) throws IOException {
+    try {
+      verifyAuthToken(command.getAuthToken());
+      verifyGameOver(command.getGameID());
+      var gameData = dataAccess.getGame(String.valueOf(command.getGameID()));
+      var authData = dataAccess.getAuth(command.getAuthToken());
+      if (!(authData.username().equals(gameData.whiteUsername()) || authData.username().equals(gameData.blackUsername()))) {
+        throw new ResponseException(500, "Unable to add the computer as an observer");
+      }
+
+      GameData newGameData;
+      String color;
+      if (gameData.whiteUsername() == null) {
+        newGameData = new GameData(gameData.gameID(), BotPlayer.USERNAME, gameData.blackUsername(), gameData.gameName(), gameData.game());
+        color = "white";
+      } else if (gameData.blackUsername() == null) {
+        newGameData = new GameData(gameData.gameID(), gameData.whiteUsername(), BotPlayer.USERNAME, gameData.gameName(), gameData.game());
+        color = "black";
+      } else {
+        throw new ResponseException(403, "Both seats are already taken");
+      }
+      dataAccess.updateGame(newGameData.gameID(), newGameData);
+
+      String message = String.format("%s has joined the game as %s", BotPlayer.USERNAME, color);
+      connectionHandler.notification(new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, message), command.getGameID());
+      scheduleBotMove(newGameData);
+    } catch (ResponseException e) {
+      ErrorMessage errorMessage =
+              new ErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage());
+      connectionHandler.errorMessage(errorMessage, session);
     }
-    if (game.game().isInCheckmate(ChessGame.TeamColor.WHITE)) {
-      game.game().setGameOver(true);
-      game.game().setWinner(ChessGame.TeamColor.BLACK);
-      dataAccess.updateGame(game.gameID(), game);
-      var checkMateMessage = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-              "Checkmate: Black has won the game");
-      connectionHandler.notification(checkMateMessage, Integer.valueOf(game.gameID()));
+  }
+
+  /**
+   * Starts the computer's search if it is the computer's turn. The move is
+   * played when the search finishes, unless the game has moved on or ended by
+   * then. If the search or playing the move fails, the players are told.
+   */
+  private void scheduleBotMove(GameData gameData) {
+    ChessGame game = gameData.game();
+    String toMove = game.getTeamTurn() == ChessGame.TeamColor.WHITE ? gameData.whiteUsername() : gameData.blackUsername();
+    if (game.isGameOver() || !BotPlayer.USERNAME.equals(toMove)) {
       return;
     }
-    if (game.game().isInCheckmate(ChessGame.TeamColor.BLACK)) {
+    long positionKey = game.positionKey();
+    botPlayer().chooseMove(game)
+            .thenAccept(move -> playBotMove(gameData.gameID(), positionKey, move))
+            .exceptionally(failure -> {
+              reportBotFailure(gameData.gameID(), failure instanceof CompletionException ? failure.getCause() : failure);
+              return null;
+            });
+  }
+
+  private void playBotMove(String gameID, long positionKey, ChessMove move) {
+    synchronized (lockFor(Integer.valueOf(gameID))) {
+      playBotMoveLocked(gameID, positionKey, move);
+    }
+  }
+
+  private void playBotMoveLocked(String gameID, long positionKey, ChessMove move) {
+    try {
+      var gameData = dataAccess.getGame(gameID);
+      if (move == null || gameData == null) {
+        return;
+      }
+      var game = gameData.game();
+      if (game.isGameOver() || game.positionKey() != positionKey) {
+        return;
+      }
+
+      game.makeMove(move);
+      var newGameData = new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
+      dataAccess.updateGame(newGameData.gameID(), newGameData);
+      var loadGameMessage = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, newGameData.game());
+      connectionHandler.loadGame(loadGameMessage, Integer.valueOf(gameID));
+      var moveMadeMessage = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+              BotPlayer.USERNAME + " moved " + moveToString(move));
+      connectionHandler.notification(moveMadeMessage, Integer.valueOf(gameID));
+
+      checkGameStatus(newGameData);
+    } catch (ResponseException | IOException | InvalidMoveException e) {
+      reportBotFailure(gameID, e);
+    }
+  }
+
+  /**
+   * Logs why the computer could not move and tells the game's players; the
+   * game is left as it was, so they can resign or leave
+   */
+  private void reportBotFailure(String gameID, Throwable failure) {
+    LOG.error("The computer could not move in game {}", gameID, failure);
+    var errorMessage = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
+            "Error: the computer could not make its move; resign or leave to end the game");
+    try {
+      connectionHandler.errorMessage(errorMessage, Integer.valueOf(gameID));
+    } catch (IOException e) {
+      LOG.warn("Could not tell the players of game {}", gameID, e);
+    }
+  }
+
+  private void checkGameStatus(GameData game) throws ResponseException, IOException {
+    GameStatus status = game.game().getStatus();
+    String message;
+    switch (status.state()) {
+      case STALEMATE -> message = "Stalemate: the game ended in a draw";
+      case INSUFFICIENT_MATERIAL -> message = "Neither player can checkmate: the game ended in a draw";
+      case THREEFOLD_REPETITION -> message = "The same position occurred three times: the game ended in a draw";
+      case FIFTY_MOVE_RULE -> message = "Fifty moves without a capture or pawn move: the game ended in a draw";
+      case CHECKMATE -> message = "Checkmate: " + teamName(status.winner()) + " has won the game";
+      case CHECK -> message = teamName(status.team()) + " is in check";
+      default -> {
+        announceEndgame(game);
+        return;
+      }
+    }
+    if (status.isOver()) {
       game.game().setGameOver(true);
-      game.game().setWinner(ChessGame.TeamColor.WHITE);
+      game.game().setWinner(status.winner());
       dataAccess.updateGame(game.gameID(), game);
-      var checkMateMessage = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-              "Checkmate: White has won the game");
-      connectionHandler.notification(checkMateMessage, Integer.valueOf(game.gameID()));
+    }
+    var notification = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, message);
+    connectionHandler.notification(notification, Integer.valueOf(game.gameID()));
+    if (!status.isOver()) {
+      announceEndgame(game);
+    }
+  }
+
+  /**
+   * Tells the players how an ending the tablebases cover turns out with best
+   * play, when a capture or pawn move has just reached it. The game goes on:
+   * the result still has to be played out.
+   */
+  private void announceEndgame(GameData game) throws IOException {
+    Tablebase tablebase = BotPlayer.defaultTablebase();
+    ChessGame chessGame = game.game();
+    if (tablebase == null || chessGame.getHalfmoveClock() != 0) {
       return;
     }
-    if (game.game().isInCheck(ChessGame.TeamColor.WHITE)) {
-      var checkMessage = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-              "White is in check");
-      connectionHandler.notification(checkMessage, Integer.valueOf(game.gameID()));
+    int score = tablebase.probe(chessGame);
+    if (score == Tablebase.NOT_FOUND) {
       return;
     }
-    if (game.game().isInCheck(ChessGame.TeamColor.BLACK)) {
-      var checkMessage = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-              "Black is in check");
-      connectionHandler.notification(checkMessage, Integer.valueOf(game.gameID()));
+    String message;
+    if (score == 0) {
+      message = "Endgame tablebase: the position is a draw with best play";
+    } else {
+      ChessGame.TeamColor toMove = chessGame.getTeamTurn();
+      ChessGame.TeamColor winner = score > 0 ? toMove
+              : toMove == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+      int plies = Engine.MATE - Math.abs(score);
+      // mate in n moves of the winner takes 2n - 1 plies when the winner moves first
+      int moves = score > 0 ? (plies + 1) / 2 : plies / 2;
+      message = String.format("Endgame tablebase: %s can force checkmate in %d move%s", teamName(winner), moves,
+              moves == 1 ? "" : "s");
+    }
+    var notification = new NotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, message);
+    connectionHandler.notification(notification, Integer.valueOf(game.gameID()));
+  }
+
+  private BotPlayer botPlayer() {
+    BotPlayer bot = botPlayer;
+    if (bot == null) {
+      synchronized (this) {
+        bot = botPlayer;
+        if (bot == null) {
+          bot = new BotPlayer();
+          botPlayer = bot;
+        }
+      }
     }
+    return bot;
+  }
+
+  private String teamName(ChessGame.TeamColor team) {
+    return team == ChessGame.TeamColor.WHITE ? "White" : "Black";
   }
 
   private String moveToString(ChessMove move) {
@@ -0,0 +1,102 @@
+package dataaccess;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.Fen;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LegacyGameTests {
+
+  @Test
+  void castlingFromMovedFlags() {
+    JsonArray squares = emptySquares();
+    // the white king went away and came back, so neither white right is left
+    put(squares, "e1", "WHITE", "KING", true, false);
+    put(squares, "a1", "WHITE", "ROOK", false, false);
+    put(squares, "h1", "WHITE", "ROOK", false, false);
+    put(squares, "e8", "BLACK", "KING", false, false);
+    put(squares, "a8", "BLACK", "ROOK", true, false);
+    put(squares, "h8", "BLACK", "ROOK", false, false);
+    // black's last move was d7-d5
+    put(squares, "d5", "BLACK", "PAWN", true, true);
+    put(squares, "e5", "WHITE", "PAWN", true, false);
+
+    ChessGame game = SqlDataAccess.readLegacyGame(legacyRow(squares, "WHITE").toString());
+    ChessBoard board = game.getBoard();
+    Assertions.assertEquals(ChessBoard.BLACK_RIGHT_CASTLE, board.getCastlingRights());
+    Assertions.assertEquals(Fen.parse("r3k2r/8/8/3pP3/8/8/8/R3K2R w k d6 0 1").positionKey(), game.positionKey());
+  }
+
+  @Test
+  void unmovedPiecesKeepEveryRight() {
+    ChessGame start = new ChessGame();
+    JsonArray squares = emptySquares();
+    String[] back = {"ROOK", "KNIGHT", "BISHOP", "QUEEN", "KING", "BISHOP", "KNIGHT", "ROOK"};
+    for (int column = 0; column < 8; column++) {
+      String file = String.valueOf((char) ('a' + column));
+      put(squares, file + "1", "WHITE", back[column], false, false);
+      put(squares, file + "2", "WHITE", "PAWN", false, false);
+      put(squares, file + "7", "BLACK", "PAWN", false, false);
+      put(squares, file + "8", "BLACK", back[column], false, false);
+    }
+
+    ChessGame game = SqlDataAccess.readLegacyGame(legacyRow(squares, "WHITE").toString());
+    Assertions.assertEquals(ChessBoard.ALL_CASTLING, game.getBoard().getCastlingRights());
+    Assertions.assertEquals(-1, game.getBoard().getEnPassantSquare());
+    Assertions.assertEquals(start.positionKey(), game.positionKey());
+  }
+
+  @Test
+  void misplacedEnPassantFlagIgnored() {
+    JsonArray squares = emptySquares();
+    put(squares, "e1", "WHITE", "KING", true, false);
+    put(squares, "e8", "BLACK", "KING", true, false);
+    // a black pawn on its own second row cannot just have made a double move
+    put(squares, "d7", "BLACK", "PAWN", false, true);
+
+    ChessGame game = SqlDataAccess.readLegacyGame(legacyRow(squares, "WHITE").toString());
+    Assertions.assertEquals(-1, game.getBoard().getEnPassantSquare());
+    Assertions.assertEquals(Fen.parse("4k3/3p4/8/8/8/8/8/4K3 w - - 0 1").positionKey(), game.positionKey());
+  }
+
+  private static JsonArray emptySquares() {
+    JsonArray squares = new JsonArray();
+    for (int row = 0; row < 8; row++) {
+      JsonArray columns = new JsonArray();
+      for (int column = 0; column < 8; column++) {
+        columns.add(JsonNull.INSTANCE);
+      }
+      squares.add(columns);
+    }
+    return squares;
+  }
+
+  /**
+   * Places a piece as Gson wrote it before pieces lost their flags
+   */
+  private static void put(JsonArray squares, String square, String color, String type, boolean alreadyMoved,
+                          boolean enPassantStatus) {
+    JsonObject piece = new JsonObject();
+    piece.addProperty("pieceColor", color);
+    piece.addProperty("type", type);
+    piece.addProperty("enPassantStatus", enPassantStatus);
+    piece.addProperty("alreadyMoved", alreadyMoved);
+    int row = square.charAt(1) - '1';
+    int column = square.charAt(0) - 'a';
+    squares.get(row).getAsJsonArray().set(column, piece);
+  }
+
+  private static JsonObject legacyRow(JsonArray squares, String teamTurn) {
+    JsonObject board = new JsonObject();
+    board.add("squares", squares);
+    JsonObject game = new JsonObject();
+    game.add("board", board);
+    game.addProperty("teamTurn", teamTurn);
+    game.addProperty("gameOver", false);
+    return game;
+  }
+}
@@ -0,0 +1,99 @@
+package chess;
+
+/**
+ * Helpers for working with bitboards, where each bit of a long represents one
+ * square of the board.
+ * <p>
+ * Squares are indexed from 0 to 63: bit 0 is row 1 column 1 (a1), bit 7 is
+ * row 1 column 8 (h1) and bit 63 is row 8 column 8 (h8).
+ */
+public final class Bitboards {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_8 = RANK_1 << 56;
+    // a1 is a dark square
+    public static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+    // squares between the king and the rook on the first row
+    static final long RIGHT_CASTLE_PATH = 0x60L;
+    static final long LEFT_CASTLE_PATH = 0x0EL;
+    // the pieces a pawn can promote to, in the order moves are generated
+    static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT
+    };
+
+    private Bitboards() {
+    }
+
+    /**
+     * @return the square index of the given row and column, both starting at 1
+     */
+    public static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    /**
+     * @return the square index of the given position
+     */
+    public static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    /**
+     * @return the row (1 to 8) of a square index
+     */
+    public static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    /**
+     * @return the column (1 to 8) of a square index
+     */
+    public static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    /**
+     * @return a bitboard with only the given square set
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * @return the position of a square index
+     */
+    public static ChessPosition position(int square) {
+        return ChessPosition.of(row(square), column(square));
+    }
+
+    /**
+     * @return true if the row and column are on the board
+     */
+    public static boolean isOnBoard(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    /**
+     * @return the index of a team and piece type into a twelve entry bitboard array
+     */
+    public static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    /**
+     * Whether the king passes through check is left to the caller
+     *
+     * @param path {@link #RIGHT_CASTLE_PATH} or {@link #LEFT_CASTLE_PATH}
+     * @return true if the board still has the castling right and the squares
+     * between the king and rook on the row are empty
+     */
+    static boolean canCastle(ChessBoard board, int right, int row, long path) {
+        long between = path << (8 * (row - 1));
+        return (board.getCastlingRights() & right) != 0 && (board.getOccupancy() & between) == 0;
+    }
+}
@@ -0,0 +1,127 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a game's position: the pieces, castling rights, any pawn
+ * that can be taken en passant and whose turn it is.
+ * <p>
+ * The whole board is packed into four longs, four bits per square, so taking a
+ * snapshot is cheap and a snapshot can be handed to other threads or kept as
+ * history without copying or locking the live game.
+ */
+public final class BoardSnapshot {
+
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    // sixteen squares per long, each 0 if empty or the piece's bitboard index + 1
+    private final long[] squares = new long[4];
+    private final int castlingRights;
+    private final int enPassantColumn;
+    private final ChessGame.TeamColor teamTurn;
+    private final long key;
+
+    BoardSnapshot(ChessBoard board, ChessGame.TeamColor teamTurn, long key) {
+        for (ChessGame.TeamColor color : COLORS) {
+            for (ChessPiece.PieceType type : TYPES) {
+                long code = Bitboards.pieceIndex(color, type) + 1;
+                for (long pieces = board.getBitboard(color, type); pieces != 0; pieces &= pieces - 1) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    squares[square >>> 4] |= code << ((square & 15) * 4);
+                }
+            }
+        }
+        this.castlingRights = board.getCastlingRights();
+        this.enPassantColumn = board.enPassantColumn();
+        this.teamTurn = teamTurn;
+        this.key = key;
+    }
+
+    private int code(int square) {
+        return (int) (squares[square >>> 4] >>> ((square & 15) * 4)) & 15;
+    }
+
+    /**
+     * @return the type of the piece at the position, or null if it is empty
+     */
+    public ChessPiece.PieceType getPieceType(ChessPosition position) {
+        int code = code(Bitboards.square(position));
+        return code == 0 ? null : TYPES[(code - 1) % 6];
+    }
+
+    /**
+     * @return the team of the piece at the position, or null if it is empty
+     */
+    public ChessGame.TeamColor getTeamColor(ChessPosition position) {
+        int code = code(Bitboards.square(position));
+        return code == 0 ? null : COLORS[(code - 1) / 6];
+    }
+
+    /**
+     * @return the piece at the position, or null if it is empty
+     */
+    public ChessPiece getPiece(ChessPosition position) {
+        int code = code(Bitboards.square(position));
+        return code == 0 ? null : ChessPiece.of(code - 1);
+    }
+
+    public ChessGame.TeamColor getTeamTurn() {
+        return teamTurn;
+    }
+
+    /**
+     * @return the castling rights as a mask of the {@link ChessBoard} *_CASTLE
+     * constants
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @return the column (1 to 8) of a pawn that can be taken en passant, or 0
+     */
+    public int getEnPassantColumn() {
+        return enPassantColumn;
+    }
+
+    /**
+     * @return the same key {@link ChessGame#positionKey()} gave when the
+     * snapshot was taken
+     */
+    public long positionKey() {
+        return key;
+    }
+
+    /**
+     * @return a new game, with its own board, in this position
+     */
+    public ChessGame toGame() {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            int code = code(square);
+            if (code != 0) {
+                board.setPiece(square, ChessPiece.of(code - 1));
+            }
+        }
+        board.setCastlingRights(castlingRights);
+        if (enPassantColumn != 0) {
+            board.setEnPassantColumn(enPassantColumn, teamTurn);
+        }
+        return new ChessGame(board, teamTurn);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        BoardSnapshot that = (BoardSnapshot) o;
+        return key == that.key && castlingRights == that.castlingRights && enPassantColumn == that.enPassantColumn
+                && teamTurn == that.teamTurn && Arrays.equals(squares, that.squares);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key);
+    }
+}
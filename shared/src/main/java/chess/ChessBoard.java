@@ -3,7 +3,6 @@ package chess;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Logger;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
@@ -13,8 +12,70 @@ import java.util.logging.Logger;
  */
 public class ChessBoard {
 
+    public static final int WHITE_RIGHT_CASTLE = 1;
+    public static final int WHITE_LEFT_CASTLE = 1 << 1;
+    public static final int BLACK_RIGHT_CASTLE = 1 << 2;
+    public static final int BLACK_LEFT_CASTLE = 1 << 3;
+    public static final int ALL_CASTLING = 15;
+
+    // castling rights kept by a move that starts or ends on each square; moving
+    // a king or rook, or capturing a rook, gives up the rights that depend on it
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    // The material signature packs the number of pieces of each team and type
+    // into 5 bits per bitboard index, so a material balance is one long compare
+    private static final int SIGNATURE_BITS = 5;
+    private static final long SIGNATURE_FIELD = (1L << SIGNATURE_BITS) - 1;
+    private static final long KINGS = SIGNATURE_FIELD * (signature(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)
+            | signature(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+    private static final long BISHOPS = SIGNATURE_FIELD * (signature(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP)
+            | signature(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+    private static final long WHITE_KNIGHT = signature(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT);
+    private static final long BLACK_KNIGHT = signature(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
+
+    static {
+        Arrays.fill(CASTLING_KEPT, ALL_CASTLING);
+        CASTLING_KEPT[Bitboards.square(1, 5)] = ~(WHITE_RIGHT_CASTLE | WHITE_LEFT_CASTLE);
+        CASTLING_KEPT[Bitboards.square(1, 8)] = ~WHITE_RIGHT_CASTLE;
+        CASTLING_KEPT[Bitboards.square(1, 1)] = ~WHITE_LEFT_CASTLE;
+        CASTLING_KEPT[Bitboards.square(8, 5)] = ~(BLACK_RIGHT_CASTLE | BLACK_LEFT_CASTLE);
+        CASTLING_KEPT[Bitboards.square(8, 8)] = ~BLACK_RIGHT_CASTLE;
+        CASTLING_KEPT[Bitboards.square(8, 1)] = ~BLACK_LEFT_CASTLE;
+    }
+
     private ChessPiece[][] squares = new ChessPiece[8][8];
 
+    // Castling rights not yet given up, as a mask of the *_CASTLE constants, and
+    // the square a pawn skipped over with a double move on the last move (-1 if
+    // none). A new board starts with every right, so pieces placed on their
+    // starting squares with addPiece can castle.
+    private int castlingRights = ALL_CASTLING;
+    private int enPassantSquare = -1;
+
+    // Bitboard view of squares, one long per team and piece type, along with
+    // piece counts (also packed into a material signature), king squares and
+    // the Zobrist key of the pieces. These are not serialized, so they are
+    // rebuilt whenever squares is replaced underneath us (e.g. by Gson) and
+    // no longer matches indexedSquares.
+    private transient long[] pieceBitboards = new long[12];
+    private transient long[] teamBitboards = new long[2];
+    private transient long occupied;
+    private transient int[] pieceCounts = new int[12];
+    private transient long materialSignature;
+    private transient int[] kingSquares = {-1, -1};
+    private transient long pieceKey;
+    private transient ChessPiece[][] indexedSquares = squares;
+
+    // Undo stack for makeMove(int)/unmakeMove(). Each entry is the packed move
+    // with its kind flags, followed by the castling rights and en passant square
+    // from before the move and the captured piece.
+    private static final int UNDO_CASTLING_SHIFT = 19;
+    private static final int UNDO_EN_PASSANT_SHIFT = 23;
+    private static final int UNDO_CAPTURED_SHIFT = 30;
+
+    private transient int undoSize;
+    private transient long[] undoMoves = new long[32];
+
     public ChessBoard() {
         
     }
@@ -26,7 +87,274 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = piece;
+        setPiece(Bitboards.square(position), piece == null ? null : ChessPiece.of(piece.getTeamColor(), piece.getPieceType()));
+    }
+
+    void setPiece(int square, ChessPiece piece) {
+        ensureIndexed();
+        ChessPiece old = squares[square >>> 3][square & 7];
+        if (old != null) {
+            unindex(old, square);
+        }
+        squares[square >>> 3][square & 7] = piece;
+        if (piece != null) {
+            index(piece, square);
+        }
+    }
+
+    private void index(ChessPiece piece, int square) {
+        int pieceIndex = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+        long bit = Bitboards.bit(square);
+        pieceBitboards[pieceIndex] |= bit;
+        teamBitboards[piece.getTeamColor().ordinal()] |= bit;
+        occupied |= bit;
+        pieceCounts[pieceIndex]++;
+        materialSignature += 1L << (pieceIndex * SIGNATURE_BITS);
+        pieceKey ^= Zobrist.piece(pieceIndex, square);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            kingSquares[piece.getTeamColor().ordinal()] = square;
+        }
+    }
+
+    private void unindex(ChessPiece piece, int square) {
+        int pieceIndex = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+        long bit = Bitboards.bit(square);
+        pieceBitboards[pieceIndex] &= ~bit;
+        teamBitboards[piece.getTeamColor().ordinal()] &= ~bit;
+        occupied &= ~bit;
+        pieceCounts[pieceIndex]--;
+        materialSignature -= 1L << (pieceIndex * SIGNATURE_BITS);
+        pieceKey ^= Zobrist.piece(pieceIndex, square);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            long kings = pieceBitboards[pieceIndex];
+            kingSquares[piece.getTeamColor().ordinal()] = kings == 0 ? -1 : Long.numberOfTrailingZeros(kings);
+        }
+    }
+
+    private void ensureIndexed() {
+        if (indexedSquares == squares) {
+            return;
+        }
+        undoSize = 0;
+        Arrays.fill(pieceBitboards, 0);
+        Arrays.fill(teamBitboards, 0);
+        occupied = 0;
+        Arrays.fill(pieceCounts, 0);
+        materialSignature = 0;
+        Arrays.fill(kingSquares, -1);
+        pieceKey = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = squares[square >>> 3][square & 7];
+            if (piece != null) {
+                // pieces read by Gson are copies; swap in the shared ones
+                piece = ChessPiece.of(piece.getTeamColor(), piece.getPieceType());
+                squares[square >>> 3][square & 7] = piece;
+                index(piece, square);
+            }
+        }
+        indexedSquares = squares;
+    }
+
+    /**
+     * @return the Zobrist key of the pieces on this board, their castling rights
+     * and any pawn that can be taken en passant. Whose turn it is is not part of
+     * the board; see {@link ChessGame#positionKey()}.
+     */
+    public long getKey() {
+        ensureIndexed();
+        long key = pieceKey ^ Zobrist.castling(getCastlingRights());
+        int enPassantColumn = enPassantColumn();
+        return enPassantColumn == 0 ? key : key ^ Zobrist.enPassant(enPassantColumn);
+    }
+
+    /**
+     * @return the castling rights left on this board, as a mask of the *_CASTLE
+     * constants. A right is held until its king or rook moves or the rook is
+     * captured, and only while both stand on their starting squares.
+     */
+    public int getCastlingRights() {
+        return castlingRights & placedCastlingRights();
+    }
+
+    private int placedCastlingRights() {
+        return placedCastlingRights(ChessGame.TeamColor.WHITE, 1, WHITE_RIGHT_CASTLE, WHITE_LEFT_CASTLE)
+                | placedCastlingRights(ChessGame.TeamColor.BLACK, 8, BLACK_RIGHT_CASTLE, BLACK_LEFT_CASTLE);
+    }
+
+    private int placedCastlingRights(ChessGame.TeamColor color, int row, int right, int left) {
+        if (!isPiece(Bitboards.square(row, 5), color, ChessPiece.PieceType.KING)) {
+            return 0;
+        }
+        int rights = 0;
+        if (isPiece(Bitboards.square(row, 8), color, ChessPiece.PieceType.ROOK)) {
+            rights |= right;
+        }
+        if (isPiece(Bitboards.square(row, 1), color, ChessPiece.PieceType.ROOK)) {
+            rights |= left;
+        }
+        return rights;
+    }
+
+    /**
+     * Sets the castling rights. A right whose king or rook is not on its
+     * starting square still has no effect.
+     *
+     * @param rights mask of the *_CASTLE constants
+     */
+    public void setCastlingRights(int rights) {
+        castlingRights = rights;
+    }
+
+    /**
+     * @return the square index a pawn skipped over with a double move on the
+     * last move, where it can be captured en passant, or -1 if there is none
+     */
+    public int getEnPassantSquare() {
+        if (enPassantSquare < 0) {
+            return -1;
+        }
+        // ignore it if the board has since been edited and the pawn is gone
+        boolean whitePawn = Bitboards.row(enPassantSquare) == 3;
+        int pawnSquare = enPassantSquare + (whitePawn ? 8 : -8);
+        ChessGame.TeamColor pawnColor = whitePawn ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        return isPiece(pawnSquare, pawnColor, ChessPiece.PieceType.PAWN) ? enPassantSquare : -1;
+    }
+
+    /**
+     * Records that the pawn on the given column just made a double move, so the
+     * team whose turn it is may capture it en passant
+     *
+     * @return false if there is no such pawn
+     */
+    boolean setEnPassantColumn(int column, ChessGame.TeamColor turn) {
+        ChessGame.TeamColor pawnColor = turn == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        if (!isPiece(Bitboards.square(turn == ChessGame.TeamColor.WHITE ? 5 : 4, column), pawnColor, ChessPiece.PieceType.PAWN)) {
+            return false;
+        }
+        enPassantSquare = Bitboards.square(turn == ChessGame.TeamColor.WHITE ? 6 : 3, column);
+        return true;
+    }
+
+    /**
+     * Sets the en passant square directly, without checking that the pawn that
+     * skipped it is there
+     *
+     * @param square the skipped square, or -1 for none
+     * @throws IllegalArgumentException if the square is not on the third or
+     *                                  sixth row, where a pawn can skip over it
+     */
+    public void setEnPassantSquare(int square) {
+        if (square != -1 && (square < 0 || square > 63 || (Bitboards.row(square) != 3 && Bitboards.row(square) != 6))) {
+            throw new IllegalArgumentException("Not an en passant square: " + square);
+        }
+        enPassantSquare = square;
+    }
+
+    private boolean isPiece(int square, ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        ChessPiece piece = getPiece(square);
+        return piece != null && piece.getTeamColor() == color && piece.getPieceType() == type;
+    }
+
+    /**
+     * @return the column (1 to 8) of the pawn that can be captured en passant if
+     * an enemy pawn is in place to do it, otherwise 0. A double move with no pawn
+     * able to answer it does not change the position.
+     */
+    int enPassantColumn() {
+        ensureIndexed();
+        int square = getEnPassantSquare();
+        if (square < 0) {
+            return 0;
+        }
+        ChessGame.TeamColor pusher = Bitboards.row(square) == 3 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessGame.TeamColor capturer = pusher == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        // the squares a capturing pawn could stand on are those a pusher's pawn
+        // on the skipped square would attack
+        if ((Attacks.pawn(pusher, square) & pieceBitboards[Bitboards.pieceIndex(capturer, ChessPiece.PieceType.PAWN)]) == 0) {
+            return 0;
+        }
+        return Bitboards.column(square);
+    }
+
+    /**
+     * @return how many pieces of the given team and type are on the board
+     */
+    public int getPieceCount(ChessGame.TeamColor teamColor, ChessPiece.PieceType pieceType) {
+        ensureIndexed();
+        return pieceCounts[Bitboards.pieceIndex(teamColor, pieceType)];
+    }
+
+    /**
+     * @return the material on the board: the number of pieces of each team and
+     * type, 5 bits each in bitboard index order (see
+     * {@link Bitboards#pieceIndex}). Boards with the same material have the
+     * same signature wherever the pieces stand.
+     */
+    public long getMaterialSignature() {
+        ensureIndexed();
+        return materialSignature;
+    }
+
+    /**
+     * @return the signature of a single piece of the given team and type;
+     * signatures add, so a material balance is the sum of its pieces
+     */
+    public static long signature(ChessGame.TeamColor teamColor, ChessPiece.PieceType pieceType) {
+        return 1L << (Bitboards.pieceIndex(teamColor, pieceType) * SIGNATURE_BITS);
+    }
+
+    /**
+     * Determines if neither team has the pieces to checkmate: kings alone, a
+     * king and one knight against a king, or kings and any number of bishops
+     * that all stand on squares of one color
+     *
+     * @return true if no sequence of moves can end in checkmate
+     */
+    public boolean isInsufficientMaterial() {
+        ensureIndexed();
+        long pieces = materialSignature & ~KINGS;
+        if (pieces == 0 || pieces == WHITE_KNIGHT || pieces == BLACK_KNIGHT) {
+            return true;
+        }
+        if ((pieces & ~BISHOPS) != 0) {
+            return false;
+        }
+        long bishops = pieceBitboards[Bitboards.pieceIndex(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP)]
+                | pieceBitboards[Bitboards.pieceIndex(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP)];
+        return (bishops & Bitboards.DARK_SQUARES) == 0 || (bishops & ~Bitboards.DARK_SQUARES) == 0;
+    }
+
+    /**
+     * @return the square index of the given team's king, or -1 if it has none
+     */
+    int getKingSquare(ChessGame.TeamColor teamColor) {
+        ensureIndexed();
+        return kingSquares[teamColor.ordinal()];
+    }
+
+    /**
+     * @return bitboard of the squares holding the given team's pieces of the given type
+     */
+    public long getBitboard(ChessGame.TeamColor teamColor, ChessPiece.PieceType pieceType) {
+        ensureIndexed();
+        return pieceBitboards[Bitboards.pieceIndex(teamColor, pieceType)];
+    }
+
+    /**
+     * @return bitboard of the squares holding any of the given team's pieces
+     */
+    public long getOccupancy(ChessGame.TeamColor teamColor) {
+        ensureIndexed();
+        return teamBitboards[teamColor.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long getOccupancy() {
+        ensureIndexed();
+        return occupied;
     }
 
     /**
@@ -40,16 +368,18 @@ public class ChessBoard {
         return squares[position.getRow() - 1][position.getColumn() - 1];
     }
 
+    ChessPiece getPiece(int square) {
+        return squares[square >>> 3][square & 7];
+    }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
-        for (ChessPiece[] row : squares) {
-            for (ChessPiece square: row) {
-                square = null;
-            }
-        }
+        squares = new ChessPiece[8][8];
+        castlingRights = ALL_CASTLING;
+        enPassantSquare = -1;
         ChessPiece.PieceType[] pieceOrder = {
                 ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
                 ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING, ChessPiece.PieceType.BISHOP,
@@ -57,10 +387,10 @@ public class ChessBoard {
         };
 
         for (int i = 1; i <= 8; i++) {
-            addPiece(new ChessPosition(2, i), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(7, i), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(1, i), new ChessPiece(ChessGame.TeamColor.WHITE, pieceOrder[i-1]));
-            addPiece(new ChessPosition(8, i), new ChessPiece(ChessGame.TeamColor.BLACK, pieceOrder[i-1]));
+            addPiece(ChessPosition.of(2, i), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, i), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(1, i), ChessPiece.of(ChessGame.TeamColor.WHITE, pieceOrder[i-1]));
+            addPiece(ChessPosition.of(8, i), ChessPiece.of(ChessGame.TeamColor.BLACK, pieceOrder[i-1]));
         }
     }
 
@@ -69,12 +399,15 @@ public class ChessBoard {
         if (this == o) { return true; }
         if (o == null || getClass() != o.getClass()) { return false; }
         ChessBoard that=(ChessBoard) o;
-        return Arrays.deepEquals(squares, that.squares);
+        ensureIndexed();
+        that.ensureIndexed();
+        return pieceKey == that.pieceKey && Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        ensureIndexed();
+        return Long.hashCode(pieceKey);
     }
 
     @Override
@@ -95,35 +428,201 @@ public class ChessBoard {
 
     public List<ChessPosition> getPositions(ChessGame.TeamColor teamColor) {
         List<ChessPosition> positions = new ArrayList<>();
-        for (int row = 1; row <=8; row++) {
-            for (int col = 1; col <=8; col++) {
-                ChessPosition position = new ChessPosition(row,col);
-                if (getPiece(position) != null && getPiece(position).getTeamColor() == teamColor) {
-                    positions.add(position);
-                }
-            }
+        for (long pieces = getOccupancy(teamColor); pieces != 0; pieces &= pieces - 1) {
+            positions.add(Bitboards.position(Long.numberOfTrailingZeros(pieces)));
         }
         return positions;
     }
 
     public ChessPosition findPiece(ChessGame.TeamColor teamColor, ChessPiece.PieceType pieceType) {
-        for (int row = 1; row <=8; row++) {
-            for (int col = 1; col <=8; col++) {
-                var checkPosition = new ChessPosition(row,col);
-                if (getPiece(checkPosition) != null && getPiece(checkPosition).equals(new ChessPiece(teamColor, pieceType))) {
-                    return checkPosition;
-                }
-            }
+        if (pieceType == ChessPiece.PieceType.KING) {
+            int kingSquare = getKingSquare(teamColor);
+            return kingSquare < 0 ? null : Bitboards.position(kingSquare);
         }
-        return null;
+        long pieces = getBitboard(teamColor, pieceType);
+        if (pieces == 0) {
+            return null;
+        }
+        return Bitboards.position(Long.numberOfTrailingZeros(pieces));
+    }
+
+    /**
+     * Determines if any piece of the given team attacks a square, by looking
+     * outward from the square for knights, pawns, a king and sliding pieces
+     * rather than generating the attacking team's moves
+     *
+     * @param position the square to check
+     * @param byColor  the attacking team
+     * @return True if a piece of byColor could capture on position
+     */
+    public boolean isSquareAttacked(ChessPosition position, ChessGame.TeamColor byColor) {
+        return isSquareAttacked(Bitboards.square(position), byColor, getOccupancy());
+    }
+
+    /**
+     * Same as {@link #isSquareAttacked(ChessPosition, ChessGame.TeamColor)}, but
+     * with sliding attacks computed against the given occupancy
+     */
+    boolean isSquareAttacked(int square, ChessGame.TeamColor byColor, long occupancy) {
+        ensureIndexed();
+        ChessGame.TeamColor defender = byColor == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        int attacker = byColor.ordinal() * 6;
+        if ((Attacks.knight(square) & pieceBitboards[attacker + ChessPiece.PieceType.KNIGHT.ordinal()]) != 0
+                || (Attacks.pawn(defender, square) & pieceBitboards[attacker + ChessPiece.PieceType.PAWN.ordinal()]) != 0
+                || (Attacks.king(square) & pieceBitboards[attacker + ChessPiece.PieceType.KING.ordinal()]) != 0) {
+            return true;
+        }
+        long queens = pieceBitboards[attacker + ChessPiece.PieceType.QUEEN.ordinal()];
+        long rooks = pieceBitboards[attacker + ChessPiece.PieceType.ROOK.ordinal()] | queens;
+        long bishops = pieceBitboards[attacker + ChessPiece.PieceType.BISHOP.ordinal()] | queens;
+        return (Attacks.rook(square, occupancy) & rooks) != 0
+                || (Attacks.bishop(square, occupancy) & bishops) != 0;
+    }
+
+    /**
+     * @return bitboard of the given team's pieces that attack a square, with
+     * sliding attacks computed against the given occupancy
+     */
+    long attackersOf(int square, ChessGame.TeamColor byColor, long occupancy) {
+        ensureIndexed();
+        ChessGame.TeamColor defender = byColor == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        int attacker = byColor.ordinal() * 6;
+        long queens = pieceBitboards[attacker + ChessPiece.PieceType.QUEEN.ordinal()];
+        long rooks = pieceBitboards[attacker + ChessPiece.PieceType.ROOK.ordinal()] | queens;
+        long bishops = pieceBitboards[attacker + ChessPiece.PieceType.BISHOP.ordinal()] | queens;
+        return (Attacks.knight(square) & pieceBitboards[attacker + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Attacks.pawn(defender, square) & pieceBitboards[attacker + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Attacks.king(square) & pieceBitboards[attacker + ChessPiece.PieceType.KING.ordinal()])
+                | (Attacks.rook(square, occupancy) & rooks)
+                | (Attacks.bishop(square, occupancy) & bishops);
     }
 
     public void makeMove(ChessMove move) {
         ChessPiece piece = getPiece(move.getStartPosition());
         if (move.getPromotionPiece() != null) {
-            piece = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
+            piece = ChessPiece.of(piece.getTeamColor(), move.getPromotionPiece());
+        }
+        int from = Bitboards.square(move.getStartPosition());
+        int to = Bitboards.square(move.getEndPosition());
+        setPiece(from, null);
+        setPiece(to, piece);
+        castlingRights &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        enPassantSquare = -1;
+    }
+
+    /**
+     * Plays a packed move with the full rules of chess: the rook moves with a
+     * castling king, en passant removes the passed pawn, pawns promote, and the
+     * castling rights and en passant square are updated. The move is not checked
+     * for legality. Each call can be reverted with {@link #unmakeMove()}; editing
+     * the board with addPiece in between is not supported.
+     *
+     * @param move packed move to play; its flags are ignored and worked out from
+     *             the board
+     */
+    public void makeMove(int move) {
+        ensureIndexed();
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece piece = getPiece(from);
+
+        int kindMove = PackedMove.withoutFlags(move) | moveKind(piece, from, to);
+        int capturedSquare = capturedSquare(kindMove);
+        ChessPiece captured = getPiece(capturedSquare);
+        pushUndo(kindMove, captured);
+
+        if ((kindMove & PackedMove.CASTLE) != 0) {
+            ChessPiece rook = getPiece(rookFrom(from, to));
+            setPiece(rookFrom(from, to), null);
+            setPiece(rookTo(from, to), rook);
+        }
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        setPiece(capturedSquare, null);
+        setPiece(from, null);
+        setPiece(to, promotion == null ? piece : ChessPiece.of(piece.getTeamColor(), promotion));
+
+        castlingRights &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        enPassantSquare = (kindMove & PackedMove.DOUBLE_PAWN_PUSH) != 0 ? (from + to) / 2 : -1;
+    }
+
+    /**
+     * Reverts the last move played with {@link #makeMove(int)}, restoring
+     * captured pieces, promoted pawns, castling rights and the en passant square
+     *
+     * @return the packed move that was taken back
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public int unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to take back");
+        }
+        long record = undoMoves[--undoSize];
+        int move = (int) record & ((1 << UNDO_CASTLING_SHIFT) - 1);
+
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece piece = getPiece(to);
+        if (PackedMove.promotion(move) != null) {
+            piece = ChessPiece.of(piece.getTeamColor(), ChessPiece.PieceType.PAWN);
+        }
+        setPiece(to, null);
+        setPiece(from, piece);
+        int captured = (int) (record >>> UNDO_CAPTURED_SHIFT);
+        if (captured != 0) {
+            setPiece(capturedSquare(move), ChessPiece.of(captured - 1));
+        }
+        if ((move & PackedMove.CASTLE) != 0) {
+            ChessPiece rook = getPiece(rookTo(from, to));
+            setPiece(rookTo(from, to), null);
+            setPiece(rookFrom(from, to), rook);
+        }
+        castlingRights = (int) (record >>> UNDO_CASTLING_SHIFT) & ALL_CASTLING;
+        enPassantSquare = ((int) (record >>> UNDO_EN_PASSANT_SHIFT) & 127) - 1;
+        return move;
+    }
+
+    private int moveKind(ChessPiece piece, int from, int to) {
+        int distance = to - from;
+        if (piece.getPieceType() == ChessPiece.PieceType.KING && (distance == 2 || distance == -2)) {
+            return PackedMove.CASTLE;
+        }
+        if (piece.getPieceType() != ChessPiece.PieceType.PAWN) {
+            return getPiece(to) != null ? PackedMove.CAPTURE : PackedMove.NONE;
+        }
+        if (distance == 16 || distance == -16) {
+            return PackedMove.DOUBLE_PAWN_PUSH;
+        }
+        if (Bitboards.column(from) != Bitboards.column(to) && getPiece(to) == null) {
+            return PackedMove.CAPTURE | PackedMove.EN_PASSANT;
+        }
+        return getPiece(to) != null ? PackedMove.CAPTURE : PackedMove.NONE;
+    }
+
+    private static int capturedSquare(int move) {
+        if ((move & PackedMove.EN_PASSANT) != 0) {
+            return Bitboards.square(Bitboards.row(PackedMove.from(move)), Bitboards.column(PackedMove.to(move)));
+        }
+        return PackedMove.to(move);
+    }
+
+    private static int rookFrom(int kingFrom, int kingTo) {
+        return kingTo > kingFrom ? kingFrom + 3 : kingFrom - 4;
+    }
+
+    private static int rookTo(int kingFrom, int kingTo) {
+        return (kingFrom + kingTo) / 2;
+    }
+
+    private void pushUndo(int move, ChessPiece captured) {
+        if (undoSize == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, undoSize * 2);
         }
-        squares[move.getStartPosition().getRow() - 1][move.getStartPosition().getColumn() - 1] = null;
-        squares[move.getEndPosition().getRow() - 1][move.getEndPosition().getColumn() - 1] = piece;
+        long capturedCode = captured == null ? 0 : Bitboards.pieceIndex(captured.getTeamColor(), captured.getPieceType()) + 1;
+        undoMoves[undoSize++] = move
+                | (long) castlingRights << UNDO_CASTLING_SHIFT
+                | (long) (enPassantSquare + 1) << UNDO_EN_PASSANT_SHIFT
+                | capturedCode << UNDO_CAPTURED_SHIFT;
     }
 }
@@ -1,8 +1,6 @@
 package chess;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -13,9 +11,16 @@ import java.util.Objects;
  */
 public class ChessGame {
 
-    ChessBoard board = new ChessBoard();
+    ChessBoard board;
     TeamColor teamTurn;
     boolean gameOver = false;
+    // moves since the last capture or pawn move
+    int halfmoveClock;
+
+    // legal moves of recently asked-about positions; not serialized
+    private transient MoveCache moveCache = new MoveCache();
+    // keys of the positions moves were played from; not serialized
+    private transient PositionHistory history = new PositionHistory();
 
     public TeamColor getWinner() {
         return winner;
@@ -36,10 +41,20 @@ public class ChessGame {
     }
 
     public ChessGame() {
+        board = new ChessBoard();
         board.resetBoard();
         teamTurn = TeamColor.WHITE;
     }
 
+    /**
+     * Creates a game on the given board without setting up the starting
+     * position first
+     */
+    ChessGame(ChessBoard board, TeamColor teamTurn) {
+        this.board = board;
+        this.teamTurn = teamTurn;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -69,6 +84,85 @@ public class ChessGame {
         return Objects.hash(board, teamTurn);
     }
 
+    /**
+     * @return the Zobrist key of the current position: the pieces, castling
+     * rights, any pawn that can be taken en passant and whose turn it is. Equal
+     * positions always have equal keys; different positions collide only by
+     * rare chance.
+     */
+    public long positionKey() {
+        return positionKey(teamTurn);
+    }
+
+    private long positionKey(TeamColor turn) {
+        long key = board.getKey();
+        return turn == TeamColor.BLACK ? key ^ Zobrist.blackToMove() : key;
+    }
+
+    /**
+     * @return the number of moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * @return true if the current position, with the same team to move, has
+     * occurred at least three times since the last capture or pawn move. Only
+     * positions reached by moves played on this game count.
+     */
+    public boolean isThreefoldRepetition() {
+        return isRepeated(3);
+    }
+
+    /**
+     * @param times how many occurrences to look for, counting the current one
+     * @return true if the current position, with the same team to move, has
+     * occurred at least that many times since the last capture or pawn move
+     */
+    public boolean isRepeated(int times) {
+        return history.isRepeated(positionKey(), halfmoveClock, times);
+    }
+
+    /**
+     * @return true if fifty moves by each team have been played without a
+     * capture or a pawn move
+     */
+    public boolean isFiftyMoveRule() {
+        return halfmoveClock >= 100;
+    }
+
+    PositionHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * @return an immutable copy of the current position that can be shared
+     * with other threads
+     */
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(board, teamTurn, positionKey());
+    }
+
+    /**
+     * @return how many times valid moves were answered from the move cache
+     */
+    public long getMoveCacheHits() {
+        return moveCache.getHits();
+    }
+
+    /**
+     * @return how many times valid moves were not in the move cache and were
+     * generated and cached; status checks that find no entry are not counted
+     */
+    public long getMoveCacheMisses() {
+        return moveCache.getMisses();
+    }
+
     /**
      * Enum identifying the 2 possible teams in a chess game
      */
@@ -85,72 +179,63 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
+        if (board.getPiece(startPosition) == null) {return null;}
+
+        MoveList moves = new MoveList();
+        validMoves(startPosition, moves);
+        return moves.toChessMoves();
+    }
+
+    /**
+     * Appends the packed form of each valid move for the piece at the given
+     * location to moves. Unlike {@link #validMoves(ChessPosition)} this does not
+     * allocate, so a single MoveList can be reused across calls.
+     * <p>
+     * The moves of the piece's whole team are generated once per position and
+     * kept in a small cache, so asking about several pieces of one position, or
+     * about the same position again, does not generate them again.
+     *
+     * @param startPosition the piece to get valid moves for
+     * @param moves         list to append the moves to; nothing is added if there
+     *                      is no piece at startPosition
+     */
+    public void validMoves(ChessPosition startPosition, MoveList moves) {
         ChessPiece myPiece = board.getPiece(startPosition);
-        if (myPiece == null) {return null;}
-
-        List<ChessMove> moves = new ArrayList<>(myPiece.pieceMoves(board, startPosition));
-
-        List<ChessMove> invalidMoves = new ArrayList<>();
-        for (ChessMove move : moves) {
-            if (!isCastle(move)) {
-                ChessPosition capturedPiecePosition=move.getEndPosition();
-                if (isEnPassant(move)) {
-                    capturedPiecePosition=new ChessPosition(move.getStartPosition().getRow(), move.getEndPosition().getColumn());
-                }
-                ChessPiece capturedPiece=board.getPiece(capturedPiecePosition);
-
-                board.makeMove(move);
-                if (isInCheck(myPiece.getTeamColor())) {
-                    invalidMoves.add(move);
-                }
-                board.addPiece(startPosition, myPiece);
-                board.addPiece(move.getEndPosition(), null);
-                board.addPiece(capturedPiecePosition, capturedPiece);
-            }
-            else {
-                boolean isInvalid = isInCheck(myPiece.getTeamColor());
-                //move king and Rook
-                int moveDistance = move.getEndPosition().getColumn() - move.getStartPosition().getColumn();
-                ChessPosition rookPosition = new ChessPosition(move.getStartPosition().getRow(), 8);
-                if (moveDistance < 0) {
-                    rookPosition = new ChessPosition(move.getStartPosition().getRow(), 1);
-                }
-                if (board.getPiece(rookPosition) != null && board.getPiece(rookPosition).getPieceType() == ChessPiece.PieceType.ROOK) {
-                    ChessPosition firstMovePosition = new ChessPosition(move.getStartPosition().getRow(),
-                            move.getStartPosition().getColumn() + moveDistance / 2);
-                    ChessMove firstMove = new ChessMove(move.getStartPosition(), firstMovePosition, null);
-                    board.makeMove(firstMove);
-                    if (isInCheck(myPiece.getTeamColor())) {
-                        isInvalid = true;
-                    }
-                    board.makeMove(new ChessMove(firstMove.getEndPosition(), firstMove.getStartPosition(), null));
-                    ChessMove rookMove = new ChessMove(rookPosition, firstMovePosition, null);
-                    board.makeMove(move);
-                    board.makeMove(rookMove);
-                    if (isInCheck(myPiece.getTeamColor())) {
-                        isInvalid = true;
-                    }
-                    board.makeMove(new ChessMove(rookMove.getEndPosition(), rookMove.getStartPosition(), null));
-                    board.makeMove(new ChessMove(move.getEndPosition(), move.getStartPosition(), null));
-                }
-                else {
-                    isInvalid = true;
-                }
-                if (isInvalid) {
-                    invalidMoves.add(move);
-                }
+        if (myPiece == null) {return;}
+
+        TeamColor team = myPiece.getTeamColor();
+        MoveList teamMoves = moveCache.get(board, team, positionKey(team));
+        int start = Bitboards.square(startPosition);
+        for (int i = 0; i < teamMoves.size(); i++) {
+            if (PackedMove.from(teamMoves.get(i)) == start) {
+                moves.add(teamMoves.get(i));
             }
         }
-        moves.removeAll(invalidMoves);
-        return moves;
     }
 
-    private boolean isCastle(ChessMove move) {
-        if (board.getPiece(move.getStartPosition()).getPieceType() == ChessPiece.PieceType.KING) {
-            int moveDistance = move.getEndPosition().getColumn() - move.getStartPosition().getColumn();
-            return moveDistance == 2 || moveDistance == -2;
-        }
-        return false;
+    /**
+     * Appends the packed form of every valid move for the given team to moves,
+     * working out check and pins once for the whole team. This always generates
+     * the moves rather than using the move cache, so search code can call it
+     * for every position it visits.
+     *
+     * @param teamColor the team to get valid moves for
+     * @param moves     list to append the moves to
+     */
+    public void validMoves(TeamColor teamColor, MoveList moves) {
+        LegalMoveGenerator.generate(board, teamColor, -1L, moves);
+    }
+
+    /**
+     * Gets every valid move of a team in one pass, working out check and pins
+     * once rather than once per piece, grouped by the square each move starts
+     * from. Uses the move cache like {@link #validMoves(ChessPosition)}.
+     *
+     * @param teamColor the team to get valid moves for
+     * @return the team's valid moves
+     */
+    public TeamMoves allValidMoves(TeamColor teamColor) {
+        return new TeamMoves(teamColor, moveCache.get(board, teamColor, positionKey(teamColor)));
     }
 
     /**
@@ -160,57 +245,60 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        Collection<ChessMove> validMoves = validMoves(move.getStartPosition());
-        if (validMoves == null || !validMoves.contains(move) || teamTurn != board.getPiece(move.getStartPosition()).getTeamColor()) {
+        if (!isLegal(move)) {
             throw new InvalidMoveException("Invalid Move");
         }
-        checkEnPassant(move);
-        checkCastle(move);
-        board.getPiece(move.getStartPosition()).setAlreadyMoved(true);
-        board.makeMove(move);
-        teamTurn = teamTurn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
-        resetEnemyEnPassant(teamTurn);
+        makeMove(PackedMove.of(move));
     }
 
-    private void checkCastle(ChessMove move) {
-        if (isCastle(move)) {
-            int moveDistance = move.getEndPosition().getColumn() - move.getStartPosition().getColumn();
-            ChessPosition rookPosition = new ChessPosition(move.getStartPosition().getRow(), 8);
-            if (moveDistance < 0) {
-                rookPosition = new ChessPosition(move.getStartPosition().getRow(), 1);
-            }
-            ChessPosition newRookPosition = new ChessPosition(move.getStartPosition().getRow(),
-                    move.getStartPosition().getColumn() + moveDistance / 2);
-            ChessMove rookMove = new ChessMove(rookPosition, newRookPosition, null);
-
-            board.makeMove(rookMove);
+    /**
+     * Determines if a move can be played now: it is a move the piece on its
+     * start square can make, that piece belongs to the team whose turn it is,
+     * and it does not leave that team's king in check. Only this one move is
+     * tested; no other moves are generated.
+     *
+     * @param move the move to test
+     * @return True if makeMove would accept the move
+     */
+    public boolean isLegal(ChessMove move) {
+        if (move == null || !onBoard(move.getStartPosition()) || !onBoard(move.getEndPosition())) {
+            return false;
         }
+        return LegalMoveGenerator.isLegal(board, teamTurn, PackedMove.of(move));
     }
 
-    private void resetEnemyEnPassant(TeamColor teamTurn) {
-        List<ChessPosition> enemyPositions = board.getPositions(teamTurn);
-        for (ChessPosition position : enemyPositions) {
-            board.getPiece(position).setEnPassantStatus(false);
-        }
+    private static boolean onBoard(ChessPosition position) {
+        return position != null && position.getRow() >= 1 && position.getRow() <= 8
+                && position.getColumn() >= 1 && position.getColumn() <= 8;
     }
 
-    private void checkEnPassant(ChessMove move) {
-        ChessPiece piece = board.getPiece(move.getStartPosition());
-        int moveDistance = move.getEndPosition().getRow() - move.getStartPosition().getRow();
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && (moveDistance == 2 || moveDistance == -2)) {
-            piece.setEnPassantStatus(true);
-        }
-
-        if(isEnPassant(move)) {
-            ChessPosition capturedPawnPosition = new ChessPosition(move.getStartPosition().getRow(), move.getEndPosition().getColumn());
-            board.addPiece(capturedPawnPosition, null);
-        }
+    /**
+     * Plays a packed move, such as one produced by
+     * {@link #validMoves(ChessPosition, MoveList)}, without checking that it is
+     * valid, and passes the turn to the other team
+     *
+     * @param move packed move to play
+     */
+    public void makeMove(int move) {
+        history.push(positionKey(), halfmoveClock);
+        int from = PackedMove.from(move);
+        boolean irreversible = board.getPiece(from).getPieceType() == ChessPiece.PieceType.PAWN
+                || board.getPiece(PackedMove.to(move)) != null;
+        board.makeMove(move);
+        halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+        teamTurn = opponent(teamTurn);
     }
 
-    private boolean isEnPassant(ChessMove move) {
-        return board.getPiece(move.getStartPosition()).getPieceType() == ChessPiece.PieceType.PAWN
-                && move.getStartPosition().getColumn() != move.getEndPosition().getColumn()
-                && board.getPiece(move.getEndPosition()) == null;
+    /**
+     * Takes back the last move played on this game's board, restoring the board
+     * and the team whose turn it was
+     *
+     * @throws IllegalStateException if no move has been played on the board
+     */
+    public void unmakeMove() {
+        int move = board.unmakeMove();
+        teamTurn = board.getPiece(PackedMove.from(move)).getTeamColor();
+        halfmoveClock = history.pop();
     }
 
     /**
@@ -220,25 +308,13 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        ChessPosition kingPosition = board.findPiece(teamColor, ChessPiece.PieceType.KING);
-        List<ChessPosition> enemyPositions=board.getPositions(TeamColor.BLACK);
-        if (teamColor == TeamColor.BLACK) {
-            enemyPositions = board.getPositions(TeamColor.WHITE);
-        }
-
-        for (ChessPosition enemyPosition : enemyPositions) {
-            Collection<ChessMove> enemyMoves = board.getPiece(enemyPosition).pieceMoves(board, enemyPosition);
-
-            for (ChessMove enemyMove : enemyMoves) {
-                if (enemyMove.getEndPosition().equals(kingPosition)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        int kingSquare = board.getKingSquare(teamColor);
+        return kingSquare >= 0 && board.isSquareAttacked(kingSquare, opponent(teamColor), board.getOccupancy());
     }
 
-
+    private static TeamColor opponent(TeamColor teamColor) {
+        return teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
 
     /**
      * Determines if the given team is in checkmate
@@ -251,12 +327,11 @@ public class ChessGame {
     }
 
     private boolean noValidMoves(TeamColor teamColor) {
-        List<ChessPosition> myPositions = board.getPositions(teamColor);
-        List<ChessMove> validMoves = new ArrayList<>();
-        for (ChessPosition position : myPositions) {
-            validMoves.addAll(validMoves(position));
+        MoveList cached = moveCache.peek(positionKey(teamColor));
+        if (cached != null) {
+            return cached.isEmpty();
         }
-        return validMoves.isEmpty();
+        return !LegalMoveGenerator.hasLegalMove(board, teamColor);
     }
 
     /**
@@ -271,6 +346,34 @@ public class ChessGame {
         return noValidMoves(teamColor);
     }
 
+    /**
+     * Works out whether the team whose turn it is is in check, checkmate or
+     * stalemate, looking for legal moves only until the first one is found.
+     * A game that can go on is drawn once neither team has the pieces to give
+     * checkmate, a position has occurred three times, or fifty moves have been
+     * played by each team without a capture or a pawn move; checkmate on the
+     * last of those moves still wins.
+     *
+     * @return the status of the game for the team whose turn it is
+     */
+    public GameStatus getStatus() {
+        boolean inCheck = isInCheck(teamTurn);
+        boolean canMove = !noValidMoves(teamTurn);
+        GameStatus.State state;
+        if (!canMove) {
+            state = inCheck ? GameStatus.State.CHECKMATE : GameStatus.State.STALEMATE;
+        } else if (board.isInsufficientMaterial()) {
+            state = GameStatus.State.INSUFFICIENT_MATERIAL;
+        } else if (isThreefoldRepetition()) {
+            state = GameStatus.State.THREEFOLD_REPETITION;
+        } else if (isFiftyMoveRule()) {
+            state = GameStatus.State.FIFTY_MOVE_RULE;
+        } else {
+            state = inCheck ? GameStatus.State.CHECK : GameStatus.State.ONGOING;
+        }
+        return new GameStatus(state, teamTurn);
+    }
+
     /**
      * Sets this game's chessboard with a given board
      *
@@ -278,6 +381,9 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        moveCache.clear();
+        history.clear();
+        halfmoveClock = 0;
     }
 
     /**
@@ -11,32 +11,90 @@ import java.util.Objects;
  */
 public class ChessPiece {
 
+    // indexed by PieceType ordinal; the calculators are stateless so they can be shared
+    private static final PieceMoveCalculator[] CALCULATORS = {
+            new KingMoveCalculator(), new QueenMoveCalculator(), new BishopMoveCalculator(),
+            new KnightMoveCalculator(), new RookMoveCalculator(), new PawnMoveCalculator()
+    };
+
+    // one shared instance per team and piece type, indexed like the bitboards
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
 
-    public boolean getEnPassantStatus() {
-        return enPassantStatus;
+    public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        this.pieceColor=pieceColor;
+        this.type=type;
     }
 
-    public void setEnPassantStatus(boolean enPassantStatus) {
-        this.enPassantStatus=enPassantStatus;
+    /**
+     * Pieces are immutable, so the same instance can stand on any number of
+     * squares and boards
+     *
+     * @return the shared piece of the given team and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, PieceType type) {
+        return PIECES[Bitboards.pieceIndex(pieceColor, type)];
     }
 
-    private boolean enPassantStatus= false;
+    /**
+     * @return the shared piece with the given bitboard index
+     */
+    static ChessPiece of(int pieceIndex) {
+        return PIECES[pieceIndex];
+    }
 
+    /**
+     * Pieces no longer know whether they moved; the board keeps the castling
+     * rights instead
+     *
+     * @return false
+     * @deprecated use {@link ChessBoard#getCastlingRights()}
+     */
+    @Deprecated
     public boolean isAlreadyMoved() {
-        return alreadyMoved;
+        return false;
     }
 
+    /**
+     * Has no effect, since pieces are shared between squares and boards
+     *
+     * @deprecated castling rights are kept by the board; see
+     * {@link ChessBoard#getCastlingRights()}
+     */
+    @Deprecated
     public void setAlreadyMoved(boolean alreadyMoved) {
-        this.alreadyMoved=alreadyMoved;
     }
 
-    private boolean alreadyMoved = false;
+    /**
+     * Pieces no longer know whether they can be taken en passant; the board
+     * keeps the en passant square instead
+     *
+     * @return false
+     * @deprecated use {@link ChessBoard#getEnPassantSquare()}
+     */
+    @Deprecated
+    public boolean getEnPassantStatus() {
+        return false;
+    }
 
-    public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
-        this.pieceColor=pieceColor;
-        this.type=type;
+    /**
+     * Has no effect, since pieces are shared between squares and boards
+     *
+     * @deprecated the en passant square is kept by the board; see
+     * {@link ChessBoard#getEnPassantSquare()}
+     */
+    @Deprecated
+    public void setEnPassantStatus(boolean enPassantStatus) {
     }
 
     /**
@@ -74,31 +132,18 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        if (type == PieceType.BISHOP) {
-            BishopMoveCalculator moveCalculator = new BishopMoveCalculator();
-            return moveCalculator.validMoves(board, myPosition, pieceColor);
-            }
-        else if (type == PieceType.QUEEN){
-            QueenMoveCalculator moveCalculator = new QueenMoveCalculator();
-            return moveCalculator.validMoves(board, myPosition, pieceColor);
-        }
-        else if (type == PieceType.KING){
-            KingMoveCalculator moveCalculator = new KingMoveCalculator();
-            return moveCalculator.validMoves(board, myPosition, pieceColor);
-        }
-        else if (type == PieceType.PAWN){
-            PawnMoveCalculator moveCalculator = new PawnMoveCalculator();
-            return moveCalculator.validMoves(board, myPosition, pieceColor);
-        }
-        else if (type == PieceType.KNIGHT){
-            KnightMoveCalculator moveCalculator = new KnightMoveCalculator();
-            return moveCalculator.validMoves(board, myPosition, pieceColor);
-        }
-        else if (type == PieceType.ROOK){
-            RookMoveCalculator moveCalculator = new RookMoveCalculator();
-            return moveCalculator.validMoves(board, myPosition, pieceColor);
-        }
-        throw new RuntimeException("Invalid piece type");
+        return CALCULATORS[type.ordinal()].validMoves(board, myPosition, pieceColor);
+    }
+
+    /**
+     * Appends the packed form of every move this piece could make to moves,
+     * without allocating. Like {@link #pieceMoves(ChessBoard, ChessPosition)},
+     * this does not check whether a move leaves the king in danger.
+     *
+     * @param moves list to append the moves to
+     */
+    public void pieceMoves(ChessBoard board, ChessPosition myPosition, MoveList moves) {
+        CALCULATORS[type.ordinal()].generate(board, Bitboards.square(myPosition), pieceColor, moves);
     }
 
     @Override
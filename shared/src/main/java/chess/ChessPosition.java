@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -10,6 +8,14 @@ import java.util.Objects;
  */
 public class ChessPosition {
 
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            POSITIONS[square] = new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -18,6 +24,20 @@ public class ChessPosition {
         this.col=col;
     }
 
+    /**
+     * Gets the shared instance for a position, avoiding an allocation for every
+     * square on the board
+     *
+     * @return the canonical position for an on-board row and column, or a new
+     * position if it is off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (!Bitboards.isOnBoard(row, col)) {
+            return new ChessPosition(row, col);
+        }
+        return POSITIONS[Bitboards.square(row, col)];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -53,6 +73,6 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * row + col;
     }
 }
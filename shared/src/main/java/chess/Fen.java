@@ -0,0 +1,200 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g.
+ * <pre>rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1</pre>
+ * When reading, the piece placement and the side to move are required;
+ * castling rights and the en passant square are optional and default to "-",
+ * and the halfmove clock defaults to 0. The fullmove number is accepted but
+ * ignored.
+ */
+public final class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private Fen() {
+    }
+
+    /**
+     * @return a new game set up in the position described by fen
+     * @throws IllegalArgumentException if fen is not a valid FEN string
+     */
+    public static ChessGame parse(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("FEN needs at least a board and a side to move: " + fen);
+        }
+
+        ChessBoard board = parseBoard(fields[0], fen);
+        ChessGame game = new ChessGame(board, switch (fields[1]) {
+            case "w" -> ChessGame.TeamColor.WHITE;
+            case "b" -> ChessGame.TeamColor.BLACK;
+            default -> throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        });
+
+        parseCastling(board, fields.length > 2 ? fields[2] : "-", fen);
+        parseEnPassant(board, game.getTeamTurn(), fields.length > 3 ? fields[3] : "-", fen);
+        if (fields.length > 4) {
+            game.setHalfmoveClock(parseHalfmoveClock(fields[4], fen));
+        }
+        return game;
+    }
+
+    /**
+     * Writes the game's position. The en passant square is only written when a
+     * pawn is in place to make the capture, and the fullmove number is written
+     * as 1.
+     *
+     * @return the FEN string of the game's position
+     */
+    public static String format(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int column = 1; column <= 8; column++) {
+                ChessPiece piece = board.getPiece(ChessPosition.of(row, column));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = pieceLetter(piece.getPieceType());
+                fen.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 1) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+        int rights = board.getCastlingRights();
+        if (rights == 0) {
+            fen.append('-');
+        }
+        if ((rights & ChessBoard.WHITE_RIGHT_CASTLE) != 0) {
+            fen.append('K');
+        }
+        if ((rights & ChessBoard.WHITE_LEFT_CASTLE) != 0) {
+            fen.append('Q');
+        }
+        if ((rights & ChessBoard.BLACK_RIGHT_CASTLE) != 0) {
+            fen.append('k');
+        }
+        if ((rights & ChessBoard.BLACK_LEFT_CASTLE) != 0) {
+            fen.append('q');
+        }
+
+        fen.append(' ');
+        int enPassantColumn = board.enPassantColumn();
+        if (enPassantColumn == 0) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + enPassantColumn - 1))
+                    .append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? '6' : '3');
+        }
+        return fen.append(' ').append(game.getHalfmoveClock()).append(" 1").toString();
+    }
+
+    private static char pieceLetter(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+    }
+
+    private static ChessBoard parseBoard(String placement, String fen) {
+        String[] rows = placement.split("/");
+        if (rows.length != 8) {
+            throw new IllegalArgumentException("FEN board needs 8 rows: " + fen);
+        }
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int column = 1;
+            for (char c : rows[i].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    column += c - '0';
+                    continue;
+                }
+                ChessPiece.PieceType type = pieceType(c);
+                if (type == null || column > 8) {
+                    throw new IllegalArgumentException("Bad row '" + rows[i] + "' in FEN: " + fen);
+                }
+                ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                board.addPiece(ChessPosition.of(row, column), ChessPiece.of(color, type));
+                column++;
+            }
+            if (column != 9) {
+                throw new IllegalArgumentException("Bad row '" + rows[i] + "' in FEN: " + fen);
+            }
+        }
+        return board;
+    }
+
+    private static ChessPiece.PieceType pieceType(char c) {
+        return switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> null;
+        };
+    }
+
+    private static void parseCastling(ChessBoard board, String rights, String fen) {
+        int mask = 0;
+        if (!rights.equals("-")) {
+            for (char c : rights.toCharArray()) {
+                int right = switch (c) {
+                    case 'K' -> ChessBoard.WHITE_RIGHT_CASTLE;
+                    case 'Q' -> ChessBoard.WHITE_LEFT_CASTLE;
+                    case 'k' -> ChessBoard.BLACK_RIGHT_CASTLE;
+                    case 'q' -> ChessBoard.BLACK_LEFT_CASTLE;
+                    default -> throw new IllegalArgumentException("Bad castling rights in FEN: " + fen);
+                };
+                mask |= right;
+            }
+        }
+        board.setCastlingRights(mask);
+        if (board.getCastlingRights() != mask) {
+            throw new IllegalArgumentException("Castling rights without their king and rook in FEN: " + fen);
+        }
+    }
+
+    private static int parseHalfmoveClock(String clock, String fen) {
+        try {
+            int moves = Integer.parseInt(clock);
+            if (moves >= 0) {
+                return moves;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Bad halfmove clock in FEN: " + fen);
+    }
+
+    private static void parseEnPassant(ChessBoard board, ChessGame.TeamColor turn, String square, String fen) {
+        if (square.equals("-")) {
+            return;
+        }
+        // the square named is the one the pawn skipped over
+        if (square.length() != 2 || square.charAt(0) < 'a' || square.charAt(0) > 'h'
+                || square.charAt(1) - '0' != (turn == ChessGame.TeamColor.WHITE ? 6 : 3)
+                || !board.setEnPassantColumn(square.charAt(0) - 'a' + 1, turn)) {
+            throw new IllegalArgumentException("Bad en passant square in FEN: " + fen);
+        }
+    }
+}
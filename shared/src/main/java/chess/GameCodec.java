@@ -0,0 +1,194 @@
+package chess;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary form of a ChessGame, for storing games and sending them
+ * between processes without reflective JSON.
+ * <p>
+ * Layout, {@value #MIN_SIZE} bytes plus 8 per stored position key:
+ * <pre>
+ *  byte   0       format version
+ *  bytes  1-8     bitboard of occupied squares
+ *  bytes  9-24    one nibble per occupied square, in square order: the piece's
+ *                 bitboard index (see {@link Bitboards#pieceIndex})
+ *  byte   25      bit 0 black to move, bits 1-4 castling rights, bit 5 game
+ *                 over, bit 6 has a winner, bit 7 winner is black
+ *  byte   26      en passant square + 1, or 0 for none
+ *  byte   27      halfmove clock, at most 255
+ *  byte   28      number n of position keys that follow
+ *  bytes  29-     the keys of the last n positions moves were played from,
+ *                 oldest first
+ * </pre>
+ * A board holds at most 32 pieces, so the nibbles always fit; squares past the
+ * last piece are zero. Only the positions since the last capture or pawn move,
+ * and at most the last {@value #MAX_KEYS}, are kept, which is all that
+ * threefold repetition needs before the fifty-move rule applies. Version 1
+ * games, which stop after byte 26, can still be read.
+ */
+public final class GameCodec {
+
+    public static final int MIN_SIZE = 29;
+    public static final int MAX_KEYS = 100;
+    public static final int MAX_SIZE = MIN_SIZE + 8 * MAX_KEYS;
+
+    private static final byte VERSION = 2;
+    private static final int PIECE_BYTES = 16;
+
+    private GameCodec() {
+    }
+
+    /**
+     * @return the encoded form of the game
+     * @throws IllegalArgumentException if the board has more than 32 pieces
+     */
+    public static byte[] encode(ChessGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(MIN_SIZE + 8 * keyCount(game));
+        encode(game, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the encoded form of the game at the buffer's position, advancing it
+     * by at most {@link #MAX_SIZE} bytes
+     *
+     * @throws IllegalArgumentException if the board has more than 32 pieces
+     */
+    public static void encode(ChessGame game, ByteBuffer buffer) {
+        ChessBoard board = game.getBoard();
+        long occupied = board.getOccupancy();
+        if (Long.bitCount(occupied) > 2 * PIECE_BYTES) {
+            throw new IllegalArgumentException("Cannot encode a board with more than 32 pieces");
+        }
+        buffer.put(VERSION);
+        buffer.putLong(occupied);
+
+        int written = 0;
+        int pending = -1;
+        for (long pieces = occupied; pieces != 0; pieces &= pieces - 1) {
+            ChessPiece piece = board.getPiece(Long.numberOfTrailingZeros(pieces));
+            int code = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+            if (pending < 0) {
+                pending = code;
+            } else {
+                buffer.put((byte) (pending << 4 | code));
+                pending = -1;
+                written++;
+            }
+        }
+        if (pending >= 0) {
+            buffer.put((byte) (pending << 4));
+            written++;
+        }
+        for (; written < PIECE_BYTES; written++) {
+            buffer.put((byte) 0);
+        }
+
+        int flags = board.getCastlingRights() << 1;
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= 1;
+        }
+        if (game.isGameOver()) {
+            flags |= 1 << 5;
+        }
+        if (game.getWinner() != null) {
+            flags |= 1 << 6;
+            if (game.getWinner() == ChessGame.TeamColor.BLACK) {
+                flags |= 1 << 7;
+            }
+        }
+        buffer.put((byte) flags);
+        buffer.put((byte) (board.getEnPassantSquare() + 1));
+
+        PositionHistory history = game.getHistory();
+        int keys = keyCount(game);
+        buffer.put((byte) Math.min(game.getHalfmoveClock(), 255));
+        buffer.put((byte) keys);
+        for (int i = history.size() - keys; i < history.size(); i++) {
+            buffer.putLong(history.key(i));
+        }
+    }
+
+    private static int keyCount(ChessGame game) {
+        return Math.min(Math.min(game.getHalfmoveClock(), game.getHistory().size()), MAX_KEYS);
+    }
+
+    /**
+     * @return a new game decoded from the bytes
+     * @throws IllegalArgumentException if the bytes are not an encoded game
+     */
+    public static ChessGame decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ChessGame game;
+        try {
+            game = decode(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Encoded game is cut short at " + bytes.length + " bytes");
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Encoded game has " + buffer.remaining() + " bytes left over");
+        }
+        return game;
+    }
+
+    /**
+     * Reads an encoded game at the buffer's position, advancing it past the
+     * game
+     *
+     * @return a new game decoded from the buffer
+     * @throws IllegalArgumentException if the bytes are not an encoded game
+     */
+    public static ChessGame decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION && version != 1) {
+            throw new IllegalArgumentException("Unknown encoded game version " + version);
+        }
+        long occupied = buffer.getLong();
+        if (Long.bitCount(occupied) > 2 * PIECE_BYTES) {
+            throw new IllegalArgumentException("Encoded game has more than 32 pieces");
+        }
+        int piecesStart = buffer.position();
+
+        ChessBoard board = new ChessBoard();
+        int index = 0;
+        for (long pieces = occupied; pieces != 0; pieces &= pieces - 1, index++) {
+            int packed = buffer.get(piecesStart + index / 2);
+            int code = (index & 1) == 0 ? (packed >>> 4) & 15 : packed & 15;
+            if (code >= 12) {
+                throw new IllegalArgumentException("Encoded game has an unknown piece " + code);
+            }
+            board.setPiece(Long.numberOfTrailingZeros(pieces), ChessPiece.of(code));
+        }
+        buffer.position(piecesStart + PIECE_BYTES);
+
+        int flags = buffer.get() & 0xFF;
+        int enPassant = (buffer.get() & 0xFF) - 1;
+        if (enPassant >= 0 && Bitboards.row(enPassant) != 3 && Bitboards.row(enPassant) != 6) {
+            throw new IllegalArgumentException("Encoded game has a bad en passant square");
+        }
+        board.setCastlingRights((flags >>> 1) & ChessBoard.ALL_CASTLING);
+        board.setEnPassantSquare(enPassant);
+
+        ChessGame game = new ChessGame(board, (flags & 1) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        game.setGameOver((flags & 1 << 5) != 0);
+        if ((flags & 1 << 6) != 0) {
+            game.setWinner((flags & 1 << 7) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        }
+        if (version == 1) {
+            return game;
+        }
+
+        game.setHalfmoveClock(buffer.get() & 0xFF);
+        int keys = buffer.get() & 0xFF;
+        if (keys > MAX_KEYS) {
+            throw new IllegalArgumentException("Encoded game has too many position keys");
+        }
+        // the clocks pushed are only used when taking back moves, and a decoded
+        // game has none to take back
+        for (int i = 0; i < keys; i++) {
+            game.getHistory().push(buffer.getLong(), 0);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,37 @@
+package chess;
+
+/**
+ * The status of a chess game for the team whose turn it is
+ *
+ * @param state what the team to move is facing
+ * @param team  the team whose turn it is
+ */
+public record GameStatus(State state, ChessGame.TeamColor team) {
+
+    public enum State {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        INSUFFICIENT_MATERIAL,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE
+    }
+
+    /**
+     * @return the winning team if the game has been won, otherwise null
+     */
+    public ChessGame.TeamColor winner() {
+        if (state != State.CHECKMATE) {
+            return null;
+        }
+        return team == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+
+    /**
+     * @return true if no more moves can be played
+     */
+    public boolean isOver() {
+        return state != State.ONGOING && state != State.CHECK;
+    }
+}
@@ -0,0 +1,324 @@
+package chess;
+
+/**
+ * Generates only legal moves, without playing each candidate to see whether it
+ * leaves the king in check.
+ * <p>
+ * The pieces giving check and the pieces pinned to the king are worked out once
+ * per call. A single check limits every non-king move to capturing the checker
+ * or blocking its ray, a double check leaves only king moves, and a pinned piece
+ * may only move along the line through its king and the pinning piece. King
+ * moves are tested against the enemy attacks with the king lifted off the
+ * board, and en passant (which removes two pieces from a row at once) is tested
+ * directly.
+ */
+final class LegalMoveGenerator {
+
+    private LegalMoveGenerator() {
+    }
+
+    /**
+     * Appends the legal moves of the given team's pieces on the origin squares
+     *
+     * @param origins bitboard of the squares to generate moves for; pass -1 for
+     *                every piece of the team
+     */
+    static void generate(ChessBoard board, ChessGame.TeamColor us, long origins, MoveList moves) {
+        generate(board, us, origins, moves, false);
+    }
+
+    /**
+     * @return true if the given team has at least one legal move. King moves are
+     * tried first and generation stops at the first piece that can move.
+     */
+    static boolean hasLegalMove(ChessBoard board, ChessGame.TeamColor us) {
+        return generate(board, us, -1L, new MoveList(32), true);
+    }
+
+    /**
+     * Tests a single move without generating any others: the move must be one
+     * the piece on its start square can make, and afterwards the mover's king
+     * must not be attacked, which is tested once against the board as it would
+     * be after the move.
+     *
+     * @param move packed move; its flags are ignored
+     * @return true if the given team may play the move
+     */
+    static boolean isLegal(ChessBoard board, ChessGame.TeamColor us, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece piece = board.getPiece(from);
+        if (piece == null || piece.getTeamColor() != us || (board.getOccupancy(us) & Bitboards.bit(to)) != 0) {
+            return false;
+        }
+        ChessGame.TeamColor them = opponent(us);
+        long occupied = board.getOccupancy();
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        if (piece.getPieceType() != ChessPiece.PieceType.PAWN && promotion != null) {
+            return false;
+        }
+
+        long captured = board.getOccupancy(them) & Bitboards.bit(to);
+        switch (piece.getPieceType()) {
+            case KING -> {
+                if ((Attacks.king(from) & Bitboards.bit(to)) == 0) {
+                    return isLegalCastle(board, us, them, from, to);
+                }
+                return !board.isSquareAttacked(to, them, occupied & ~Bitboards.bit(from));
+            }
+            case KNIGHT -> {
+                if ((Attacks.knight(from) & Bitboards.bit(to)) == 0) {
+                    return false;
+                }
+            }
+            case BISHOP -> {
+                if ((Attacks.bishop(from, occupied) & Bitboards.bit(to)) == 0) {
+                    return false;
+                }
+            }
+            case ROOK -> {
+                if ((Attacks.rook(from, occupied) & Bitboards.bit(to)) == 0) {
+                    return false;
+                }
+            }
+            case QUEEN -> {
+                if ((Attacks.queen(from, occupied) & Bitboards.bit(to)) == 0) {
+                    return false;
+                }
+            }
+            case PAWN -> {
+                long lastRow = us == ChessGame.TeamColor.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+                boolean promotes = (Bitboards.bit(to) & lastRow) != 0;
+                if (promotes != (promotion != null) || promotion == ChessPiece.PieceType.KING
+                        || promotion == ChessPiece.PieceType.PAWN) {
+                    return false;
+                }
+                if (isEnPassant(board, us, from, to)) {
+                    captured = Bitboards.bit(to - (us == ChessGame.TeamColor.WHITE ? 8 : -8));
+                } else if (!isPawnMove(us, from, to, occupied, captured)) {
+                    return false;
+                }
+            }
+        }
+
+        int king = board.getKingSquare(us);
+        if (king < 0) {
+            return true;
+        }
+        long after = (occupied & ~Bitboards.bit(from) & ~captured) | Bitboards.bit(to);
+        return (board.attackersOf(king, them, after) & ~captured) == 0;
+    }
+
+    private static boolean isPawnMove(ChessGame.TeamColor us, int from, int to, long occupied, long captured) {
+        if ((Attacks.pawn(us, from) & Bitboards.bit(to)) != 0) {
+            return captured != 0;
+        }
+        int direction = us == ChessGame.TeamColor.WHITE ? 8 : -8;
+        if (to == from + direction) {
+            return (occupied & Bitboards.bit(to)) == 0;
+        }
+        return to == from + 2 * direction && Bitboards.row(from) == (us == ChessGame.TeamColor.WHITE ? 2 : 7)
+                && (occupied & (Bitboards.bit(from + direction) | Bitboards.bit(to))) == 0;
+    }
+
+    private static boolean isEnPassant(ChessBoard board, ChessGame.TeamColor us, int from, int to) {
+        return to == board.getEnPassantSquare() && Bitboards.row(to) == (us == ChessGame.TeamColor.WHITE ? 6 : 3)
+                && (Attacks.pawn(us, from) & Bitboards.bit(to)) != 0;
+    }
+
+    private static boolean isLegalCastle(ChessBoard board, ChessGame.TeamColor us, ChessGame.TeamColor them,
+                                         int from, int to) {
+        boolean white = us == ChessGame.TeamColor.WHITE;
+        int row = white ? 1 : 8;
+        long occupied = board.getOccupancy();
+        if (from != Bitboards.square(row, 5) || board.isSquareAttacked(from, them, occupied)) {
+            return false;
+        }
+        if (to == from + 2) {
+            return Bitboards.canCastle(board, white ? ChessBoard.WHITE_RIGHT_CASTLE : ChessBoard.BLACK_RIGHT_CASTLE,
+                    row, Bitboards.RIGHT_CASTLE_PATH)
+                    && !board.isSquareAttacked(from + 1, them, occupied)
+                    && !board.isSquareAttacked(from + 2, them, occupied);
+        }
+        if (to == from - 2) {
+            return Bitboards.canCastle(board, white ? ChessBoard.WHITE_LEFT_CASTLE : ChessBoard.BLACK_LEFT_CASTLE,
+                    row, Bitboards.LEFT_CASTLE_PATH)
+                    && !board.isSquareAttacked(from - 1, them, occupied)
+                    && !board.isSquareAttacked(from - 2, them, occupied);
+        }
+        return false;
+    }
+
+    /**
+     * @param firstOnly stop after the first piece that has a legal move
+     * @return true if any moves were added
+     */
+    private static boolean generate(ChessBoard board, ChessGame.TeamColor us, long origins, MoveList moves,
+                                    boolean firstOnly) {
+        int start = moves.size();
+        ChessGame.TeamColor them = opponent(us);
+        long ours = board.getOccupancy(us);
+        long theirs = board.getOccupancy(them);
+        long occupied = ours | theirs;
+        int king = board.getKingSquare(us);
+
+        long checkMask = -1L;
+        long pinned = 0;
+        if (king >= 0) {
+            long checkers = board.attackersOf(king, them, occupied);
+            if ((origins & Bitboards.bit(king)) != 0) {
+                addKingMoves(board, us, them, king, checkers, moves);
+            }
+            if (Long.bitCount(checkers) > 1 || (firstOnly && moves.size() > start)) {
+                return moves.size() > start;
+            }
+            if (checkers != 0) {
+                checkMask = checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+            }
+            pinned = pinnedPieces(board, them, king, ours, occupied);
+            origins &= ~Bitboards.bit(king);
+        }
+
+        for (long pieces = ours & origins; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            long allowed = checkMask;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                allowed &= Attacks.line(king, from);
+            }
+            long targets = switch (board.getPiece(from).getPieceType()) {
+                case KNIGHT -> Attacks.knight(from);
+                case BISHOP -> Attacks.bishop(from, occupied);
+                case ROOK -> Attacks.rook(from, occupied);
+                case QUEEN -> Attacks.queen(from, occupied);
+                case KING -> Attacks.king(from);
+                case PAWN -> {
+                    addPawnMoves(board, us, them, king, from, allowed, moves);
+                    yield 0;
+                }
+            };
+            addMoves(from, targets & ~ours & allowed, theirs, moves);
+            if (firstOnly && moves.size() > start) {
+                return true;
+            }
+        }
+        return moves.size() > start;
+    }
+
+    private static void addKingMoves(ChessBoard board, ChessGame.TeamColor us, ChessGame.TeamColor them,
+                                     int king, long checkers, MoveList moves) {
+        long theirs = board.getOccupancy(them);
+        long withoutKing = board.getOccupancy() & ~Bitboards.bit(king);
+        for (long targets = Attacks.king(king) & ~board.getOccupancy(us); targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (!board.isSquareAttacked(to, them, withoutKing)) {
+                moves.add(PackedMove.encode(king, to, (theirs & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : PackedMove.NONE));
+            }
+        }
+
+        //Castling
+        boolean white = us == ChessGame.TeamColor.WHITE;
+        int row = white ? 1 : 8;
+        if (checkers != 0 || king != Bitboards.square(row, 5)) {
+            return;
+        }
+        long occupied = board.getOccupancy();
+        if (Bitboards.canCastle(board, white ? ChessBoard.WHITE_RIGHT_CASTLE : ChessBoard.BLACK_RIGHT_CASTLE,
+                row, Bitboards.RIGHT_CASTLE_PATH)
+                && !board.isSquareAttacked(king + 1, them, occupied)
+                && !board.isSquareAttacked(king + 2, them, occupied)) {
+            moves.add(PackedMove.encode(king, king + 2, PackedMove.CASTLE));
+        }
+        if (Bitboards.canCastle(board, white ? ChessBoard.WHITE_LEFT_CASTLE : ChessBoard.BLACK_LEFT_CASTLE,
+                row, Bitboards.LEFT_CASTLE_PATH)
+                && !board.isSquareAttacked(king - 1, them, occupied)
+                && !board.isSquareAttacked(king - 2, them, occupied)) {
+            moves.add(PackedMove.encode(king, king - 2, PackedMove.CASTLE));
+        }
+    }
+
+    /**
+     * @return bitboard of our pieces that are the only piece between our king and
+     * an enemy slider on the same line
+     */
+    private static long pinnedPieces(ChessBoard board, ChessGame.TeamColor them, int king, long ours, long occupied) {
+        long queens = board.getBitboard(them, ChessPiece.PieceType.QUEEN);
+        long theirs = board.getOccupancy(them);
+        long snipers = (Attacks.rook(king, theirs) & (board.getBitboard(them, ChessPiece.PieceType.ROOK) | queens))
+                | (Attacks.bishop(king, theirs) & (board.getBitboard(them, ChessPiece.PieceType.BISHOP) | queens));
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & ours;
+            }
+        }
+        return pinned;
+    }
+
+    private static void addPawnMoves(ChessBoard board, ChessGame.TeamColor us, ChessGame.TeamColor them,
+                                     int king, int from, long allowed, MoveList moves) {
+        long occupied = board.getOccupancy();
+        long theirs = board.getOccupancy(them);
+        int direction = us == ChessGame.TeamColor.WHITE ? 8 : -8;
+        int firstRow = us == ChessGame.TeamColor.WHITE ? 2 : 7;
+        long lastRow = us == ChessGame.TeamColor.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        if ((Bitboards.bit(from) & lastRow) != 0) {
+            return;
+        }
+
+        int oneForward = from + direction;
+        if ((occupied & Bitboards.bit(oneForward)) == 0) {
+            if ((allowed & Bitboards.bit(oneForward)) != 0) {
+                addPawnMove(from, oneForward, lastRow, PackedMove.NONE, moves);
+            }
+            int twoForward = oneForward + direction;
+            if (Bitboards.row(from) == firstRow && (occupied & Bitboards.bit(twoForward)) == 0
+                    && (allowed & Bitboards.bit(twoForward)) != 0) {
+                moves.add(PackedMove.encode(from, twoForward, PackedMove.DOUBLE_PAWN_PUSH));
+            }
+        }
+
+        for (long captures = Attacks.pawn(us, from) & theirs & allowed; captures != 0; captures &= captures - 1) {
+            addPawnMove(from, Long.numberOfTrailingZeros(captures), lastRow, PackedMove.CAPTURE, moves);
+        }
+
+        //En Passant
+        int to = board.getEnPassantSquare();
+        if (to < 0 || Bitboards.row(to) != (us == ChessGame.TeamColor.WHITE ? 6 : 3)
+                || (Attacks.pawn(us, from) & Bitboards.bit(to)) == 0) {
+            return;
+        }
+        // the check mask does not apply: taking the pawn that gives check is
+        // allowed even though the capture lands elsewhere, so test the position
+        // after the capture directly
+        int pawnSquare = to - direction;
+        if (king >= 0) {
+            long after = occupied ^ Bitboards.bit(from) ^ Bitboards.bit(to) ^ Bitboards.bit(pawnSquare);
+            if ((board.attackersOf(king, them, after) & ~Bitboards.bit(pawnSquare)) != 0) {
+                return;
+            }
+        }
+        moves.add(PackedMove.encode(from, to, PackedMove.CAPTURE | PackedMove.EN_PASSANT));
+    }
+
+    private static void addPawnMove(int from, int to, long lastRow, int flags, MoveList moves) {
+        if ((Bitboards.bit(to) & lastRow) == 0) {
+            moves.add(PackedMove.encode(from, to, flags));
+            return;
+        }
+        for (ChessPiece.PieceType promotion : Bitboards.PROMOTIONS) {
+            moves.add(PackedMove.encode(from, to, promotion, flags));
+        }
+    }
+
+    private static void addMoves(int from, long targets, long theirs, MoveList moves) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            moves.add(PackedMove.encode(from, to, (theirs & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : PackedMove.NONE));
+        }
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,82 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A small cache of the legal moves of recently seen positions, so asking for
+ * the moves of one position again (to highlight pieces, validate a move or
+ * work out the game status) does not generate them again.
+ * <p>
+ * Entries are keyed by the Zobrist key of the position with the team to move,
+ * so a stale entry can never be returned for a changed board; it simply
+ * misses. The cache holds a fixed number of positions, each in a reused
+ * MoveList, and a new position replaces whichever entry shares its slot.
+ */
+final class MoveCache {
+
+    // a power of two, so a key's low bits pick its slot
+    private static final int SIZE = 8;
+
+    private final long[] keys = new long[SIZE];
+    private final MoveList[] moves = new MoveList[SIZE];
+    private final boolean[] filled = new boolean[SIZE];
+    private long hits;
+    private long misses;
+
+    /**
+     * @return the legal moves of the given team on the board, generating and
+     * caching them on a miss. The list belongs to the cache and must not be
+     * modified or kept.
+     */
+    MoveList get(ChessBoard board, ChessGame.TeamColor team, long key) {
+        MoveList cached = peek(key);
+        if (cached != null) {
+            return cached;
+        }
+        misses++;
+        int slot = slot(key);
+        MoveList list = moves[slot];
+        if (list == null) {
+            list = new MoveList(64);
+            moves[slot] = list;
+        }
+        list.clear();
+        LegalMoveGenerator.generate(board, team, -1L, list);
+        keys[slot] = key;
+        filled[slot] = true;
+        return list;
+    }
+
+    /**
+     * @return the cached moves of the position with the given key, or null
+     * without generating anything if it is not cached; only a hit is counted,
+     * since a miss here stores nothing
+     */
+    MoveList peek(long key) {
+        int slot = slot(key);
+        if (filled[slot] && keys[slot] == key) {
+            hits++;
+            return moves[slot];
+        }
+        return null;
+    }
+
+    void clear() {
+        Arrays.fill(filled, false);
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return how many times moves were generated and cached
+     */
+    long getMisses() {
+        return misses;
+    }
+
+    private static int slot(long key) {
+        return (int) key & (SIZE - 1);
+    }
+}
@@ -0,0 +1,100 @@
+package chess;
+
+/**
+ * Encodes a chess move in a single int so hot paths can keep moves in
+ * primitive arrays instead of allocating a ChessMove for each one.
+ * <p>
+ * Layout, from the least significant bit:
+ * <pre>
+ *  bits  0-5   start square (see {@link Bitboards})
+ *  bits  6-11  end square
+ *  bits 12-14  promotion piece, 0 for none or PieceType ordinal + 1
+ *  bits 15-18  flags describing the move
+ * </pre>
+ * The flags are hints filled in by move generation; two packed moves describe
+ * the same ChessMove if they are equal after {@link #withoutFlags(int)}.
+ */
+public final class PackedMove {
+
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PAWN_PUSH = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    private static final int MOVE_MASK = (1 << 15) - 1;
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    /**
+     * @return a packed move with no promotion
+     */
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    /**
+     * @return a packed move promoting to the given piece type, or with no
+     * promotion if it is null
+     */
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        int promotionBits = promotion == null ? 0 : promotion.ordinal() + 1;
+        return from | (to << 6) | (promotionBits << 12) | flags;
+    }
+
+    /**
+     * @return the start square of a packed move
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * @return the end square of a packed move
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @return the piece type a packed move promotes to, or null if it is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int promotionBits = (move >>> 12) & 7;
+        return promotionBits == 0 ? null : TYPES[promotionBits - 1];
+    }
+
+    /**
+     * @return true if all the given flags are set on a packed move
+     */
+    public static boolean hasFlags(int move, int flags) {
+        return (move & flags) == flags;
+    }
+
+    /**
+     * @return the packed move with its flags cleared
+     */
+    public static int withoutFlags(int move) {
+        return move & MOVE_MASK;
+    }
+
+    /**
+     * Packs a ChessMove. ChessMove carries no flags, so none are set.
+     *
+     * @return the packed form of the move
+     */
+    public static int of(ChessMove move) {
+        return encode(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece(), NONE);
+    }
+
+    /**
+     * @return the ChessMove described by a packed move
+     */
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(Bitboards.position(from(move)), Bitboards.position(to(move)), promotion(move));
+    }
+}
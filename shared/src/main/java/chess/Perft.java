@@ -0,0 +1,233 @@
+package chess;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth ("perft"). Comparing
+ * the counts with published ones checks move generation, including castling,
+ * en passant and promotion, and timing them gives a throughput number.
+ * <p>
+ * Usage:
+ * <pre>
+ *  Perft &lt;depth&gt; [fen]          count the nodes below a position
+ *  Perft divide &lt;depth&gt; [fen]   also list the count below each first move
+ *  Perft check                  run the standard positions against their known counts
+ * </pre>
+ * The position defaults to the starting position. The first moves are split
+ * across a fork-join pool, each searched on its own game made from a snapshot
+ * of the position.
+ */
+public final class Perft {
+
+    /**
+     * A position with its published node counts, starting at depth 1
+     */
+    public record Position(String name, String fen, long... counts) {
+    }
+
+    // from the Chess Programming Wiki perft results page
+    public static final List<Position> STANDARD = List.of(
+            new Position("start", Fen.START, 20, 400, 8902, 197281, 4865609),
+            new Position("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    48, 2039, 97862, 4085603),
+            new Position("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    14, 191, 2812, 43238, 674624),
+            new Position("position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    6, 264, 9467, 422333),
+            new Position("position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    44, 1486, 62379, 2103487),
+            new Position("position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    46, 2079, 89890, 3894594)
+    );
+
+    private Perft() {
+    }
+
+    /**
+     * @return the number of move sequences of exactly depth moves from the
+     * game's position. The game is returned to the same position afterwards.
+     */
+    public static long count(ChessGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList[] lists = new MoveList[depth];
+        for (int i = 0; i < depth; i++) {
+            lists[i] = new MoveList();
+        }
+        return count(game, depth, lists);
+    }
+
+    private static long count(ChessGame game, int depth, MoveList[] lists) {
+        MoveList moves = lists[depth - 1];
+        moves.clear();
+        game.validMoves(game.getTeamTurn(), moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            nodes += count(game, depth - 1, lists);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the nodes below each first move in parallel
+     *
+     * @param fen   the position to start from
+     * @param depth the depth to count to, at least 1
+     * @param pool  the pool to run the first moves on
+     * @return the node count below each first move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(String fen, int depth, ForkJoinPool pool) {
+        return divide(Fen.parse(fen), depth, pool);
+    }
+
+    /**
+     * Counts the nodes below each first move in parallel; the game itself is
+     * not changed
+     *
+     * @return the node count below each first move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth, ForkJoinPool pool) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1");
+        }
+        BoardSnapshot snapshot = game.snapshot();
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+
+        List<RootTask> tasks = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            tasks.add(new RootTask(snapshot, moves.get(i), depth - 1));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        Map<ChessMove, Long> counts = new LinkedHashMap<>();
+        for (RootTask task : tasks) {
+            counts.put(PackedMove.toChessMove(task.move), task.join());
+        }
+        return counts;
+    }
+
+    private static class RootTask extends RecursiveTask<Long> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // tasks are never serialized; ForkJoinTask is only Serializable by inheritance
+        private final transient BoardSnapshot snapshot;
+        private final int move;
+        private final int depth;
+
+        RootTask(BoardSnapshot snapshot, int move, int depth) {
+            this.snapshot = snapshot;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            ChessGame game = snapshot.toGame();
+            game.makeMove(move);
+            return count(game, depth);
+        }
+    }
+
+    /**
+     * @return a move in coordinate notation, e.g. e2e4 or e7e8q
+     */
+    public static String toCoordinates(ChessMove move) {
+        StringBuilder text = new StringBuilder(5)
+                .append(square(move.getStartPosition()))
+                .append(square(move.getEndPosition()));
+        if (move.getPromotionPiece() != null) {
+            text.append(ChessPiece.of(ChessGame.TeamColor.BLACK, move.getPromotionPiece()));
+        }
+        return text.toString();
+    }
+
+    private static String square(ChessPosition position) {
+        return (char) ('a' + position.getColumn() - 1) + Integer.toString(position.getRow());
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        switch (args[0]) {
+            case "check" -> {
+                if (!check(pool)) {
+                    System.exit(1);
+                }
+            }
+            case "divide" -> {
+                if (args.length < 2) {
+                    usage();
+                    return;
+                }
+                run(fen(args, 2), Integer.parseInt(args[1]), true, pool);
+            }
+            default -> run(fen(args, 1), Integer.parseInt(args[0]), false, pool);
+        }
+    }
+
+    private static String fen(String[] args, int from) {
+        return args.length > from ? String.join(" ", List.of(args).subList(from, args.length)) : Fen.START;
+    }
+
+    private static void usage() {
+        System.out.println("""
+                Usage:
+                  Perft <depth> [fen]          count the nodes below a position
+                  Perft divide <depth> [fen]   also list the count below each first move
+                  Perft check                  run the standard positions against their known counts""");
+    }
+
+    private static long run(String fen, int depth, boolean printDivide, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        Map<ChessMove, Long> counts = divide(fen, depth, pool);
+        long elapsed = System.nanoTime() - start;
+
+        long nodes = 0;
+        for (Map.Entry<ChessMove, Long> entry : counts.entrySet()) {
+            if (printDivide) {
+                System.out.println(toCoordinates(entry.getKey()) + ": " + entry.getValue());
+            }
+            nodes += entry.getValue();
+        }
+        if (printDivide) {
+            System.out.println();
+        }
+        System.out.printf("depth %d: %,d nodes in %.3f s (%,.0f nodes/s)%n",
+                depth, nodes, elapsed / 1e9, nodes / (elapsed / 1e9));
+        return nodes;
+    }
+
+    private static boolean check(ForkJoinPool pool) {
+        boolean passed = true;
+        for (Position position : STANDARD) {
+            int depth = position.counts().length;
+            long expected = position.counts()[depth - 1];
+            System.out.println(position.name() + " (" + position.fen() + ")");
+            long nodes = run(position.fen(), depth, false, pool);
+            if (nodes != expected) {
+                System.out.printf("  FAILED: expected %,d nodes%n", expected);
+                passed = false;
+            }
+        }
+        System.out.println(passed ? "All positions match" : "Some positions do not match");
+        return passed;
+    }
+}
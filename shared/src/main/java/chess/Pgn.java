@@ -0,0 +1,286 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads game records in Portable Game Notation: tag pairs such as
+ * {@code [White "Carlsen"]} followed by the moves in SAN and the result.
+ * <p>
+ * Only the main line is kept. Comments, variations, move numbers and numeric
+ * annotations are skipped, and the moves are left as SAN strings, since they
+ * can only be read against the position they were played in (see
+ * {@link San#parse} and {@link #play}). Games are handed over one at a time
+ * as they are read, so a collection of any size can be read in constant
+ * memory.
+ */
+public final class Pgn {
+
+    /**
+     * A game record
+     *
+     * @param tags   the tag pairs, in the order they were read
+     * @param moves  the main line moves in SAN
+     * @param result "1-0", "0-1", "1/2-1/2" or "*" for unknown
+     */
+    public record Game(Map<String, String> tags, List<String> moves, String result) {
+
+        /**
+         * @return the team that won, or null for a draw or unknown result
+         */
+        public ChessGame.TeamColor winner() {
+            return switch (result) {
+                case "1-0" -> ChessGame.TeamColor.WHITE;
+                case "0-1" -> ChessGame.TeamColor.BLACK;
+                default -> null;
+            };
+        }
+    }
+
+    private static final String UNKNOWN_RESULT = "*";
+
+    private Pgn() {
+    }
+
+    /**
+     * @return the games of a PGN text
+     */
+    public static List<Game> parse(String pgn) {
+        List<Game> games = new ArrayList<>();
+        try {
+            read(new StringReader(pgn), games::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return games;
+    }
+
+    /**
+     * Reads games until the end of the input, passing each to the consumer as
+     * soon as it is complete
+     */
+    public static void read(Reader reader, Consumer<Game> consumer) throws IOException {
+        new Parser(reader instanceof BufferedReader ? reader : new BufferedReader(reader), consumer).run();
+    }
+
+    /**
+     * @return a new game in the game's starting position (its FEN tag, or the
+     * standard starting position)
+     * @throws IllegalArgumentException if the FEN tag is not valid
+     */
+    public static ChessGame start(Game game) {
+        String fen = game.tags().get("FEN");
+        return fen == null ? new ChessGame() : Fen.parse(fen);
+    }
+
+    /**
+     * Plays the game's moves from its starting position, passing the consumer
+     * each position before its move is played
+     *
+     * @param plies the number of moves to play at most
+     * @return the number of moves played; fewer than asked only at the end of
+     * the game or at a move that cannot be read
+     */
+    public static int play(Game game, int plies, MoveVisitor visitor) {
+        ChessGame position = start(game);
+        int played = 0;
+        for (String san : game.moves()) {
+            if (played == plies) {
+                break;
+            }
+            int move;
+            try {
+                move = San.parse(position, san);
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            visitor.visit(position, move);
+            position.makeMove(move);
+            played++;
+        }
+        return played;
+    }
+
+    /**
+     * Sees each position of a game with the move played in it
+     */
+    @FunctionalInterface
+    public interface MoveVisitor {
+
+        /**
+         * @param position the position before the move; must not be changed
+         * @param move     the packed move played
+         */
+        void visit(ChessGame position, int move);
+    }
+
+    private static final class Parser {
+
+        private final Reader reader;
+        private final Consumer<Game> consumer;
+        private final StringBuilder token = new StringBuilder();
+        private Map<String, String> tags = new LinkedHashMap<>();
+        private List<String> moves = new ArrayList<>();
+        private int peeked = -2;
+
+        Parser(Reader reader, Consumer<Game> consumer) {
+            this.reader = reader;
+            this.consumer = consumer;
+        }
+
+        void run() throws IOException {
+            boolean lineStart = true;
+            for (int c = next(); c != -1; c = next()) {
+                if (c == '\n') {
+                    lineStart = true;
+                    continue;
+                }
+                if (c == '%' && lineStart) {
+                    // an escaped line, for other programs to read
+                    skipPast('\n');
+                    continue;
+                }
+                lineStart = false;
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                switch (c) {
+                    case '[' -> readTag();
+                    case '{' -> skipPast('}');
+                    case ';' -> {
+                        skipPast('\n');
+                        lineStart = true;
+                    }
+                    case '(' -> skipVariation();
+                    case ')' -> {
+                        // unmatched; nothing to skip
+                    }
+                    default -> readToken(c);
+                }
+            }
+            finish(UNKNOWN_RESULT);
+        }
+
+        private void readTag() throws IOException {
+            // a tag after moves starts the next game, though the last had no result
+            if (!moves.isEmpty()) {
+                finish(UNKNOWN_RESULT);
+            }
+            StringBuilder name = new StringBuilder();
+            int c = next();
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = next();
+            }
+            while (c != -1 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+                name.append((char) c);
+                c = next();
+            }
+            while (c != -1 && c != '"' && c != ']') {
+                c = next();
+            }
+            StringBuilder value = new StringBuilder();
+            if (c == '"') {
+                for (c = next(); c != -1 && c != '"'; c = next()) {
+                    if (c == '\\') {
+                        c = next();
+                        if (c == -1) {
+                            break;
+                        }
+                    }
+                    value.append((char) c);
+                }
+                skipPast(']');
+            }
+            tags.put(name.toString(), value.toString());
+        }
+
+        private void readToken(int first) throws IOException {
+            token.setLength(0);
+            token.append((char) first);
+            for (int c = peek(); c != -1 && !Character.isWhitespace(c) && "{}()[];".indexOf(c) < 0; c = peek()) {
+                token.append((char) next());
+            }
+            String text = token.toString();
+            if (text.equals("1-0") || text.equals("0-1") || text.equals("1/2-1/2") || text.equals(UNKNOWN_RESULT)) {
+                finish(text);
+                return;
+            }
+            if (text.charAt(0) == '$') {
+                return;
+            }
+            // move numbers, "12." or "12...", may be written against the move
+            int start = 0;
+            while (start < text.length() && Character.isDigit(text.charAt(start))) {
+                start++;
+            }
+            if (start < text.length() && text.charAt(start) == '.') {
+                while (start < text.length() && text.charAt(start) == '.') {
+                    start++;
+                }
+            } else {
+                start = 0;
+            }
+            if (start < text.length()) {
+                moves.add(text.substring(start));
+            }
+        }
+
+        private void skipVariation() throws IOException {
+            int depth = 1;
+            for (int c = next(); c != -1; c = next()) {
+                if (c == '{') {
+                    skipPast('}');
+                } else if (c == ';') {
+                    skipPast('\n');
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void finish(String result) {
+            if (!moves.isEmpty() || !tags.isEmpty()) {
+                String tagResult = tags.get("Result");
+                if (result.equals(UNKNOWN_RESULT) && tagResult != null) {
+                    result = tagResult;
+                }
+                consumer.accept(new Game(Collections.unmodifiableMap(tags), List.copyOf(moves), result));
+            }
+            tags = new LinkedHashMap<>();
+            moves = new ArrayList<>();
+        }
+
+        private void skipPast(int end) throws IOException {
+            for (int c = next(); c != -1 && c != end; c = next()) {
+                // skipped
+            }
+        }
+
+        private int next() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = reader.read();
+            }
+            return peeked;
+        }
+    }
+}
@@ -1,238 +1,131 @@
 package chess;
 
 import java.util.List;
-import java.util.ArrayList;
 
 abstract class PieceMoveCalculator {
-  public abstract List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor);
-
-  protected List<ChessPosition> exploreDirection(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor, int rowDir, int colDir) {
-    ChessPosition newPosition = new ChessPosition(myPosition.getRow() + rowDir, myPosition.getColumn() + colDir);
-    var moves = new ArrayList<ChessPosition>();
-    if (isValidMoveNoCapture(board, newPosition)) {
-      moves.add(newPosition);
-      moves.addAll(exploreDirection(board, newPosition, myColor, rowDir, colDir));
-    }
-    else if(isValidCapture(board, newPosition, myColor)) {
-      moves.add(newPosition);
-    }
+  /**
+   * Appends the packed moves of the piece on the given square to moves, without
+   * allocating
+   */
+  public abstract void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves);
 
-    return moves;
+  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
+    MoveList moves = new MoveList();
+    generate(board, Bitboards.square(myPosition), myColor, moves);
+    return moves.toChessMoves();
   }
 
-  protected boolean isInBounds(int row, int col) {
-    return row <= 8 && row >= 1 && col <= 8 && col >= 1;
+  protected void addMoves(ChessBoard board, int from, long targets, ChessGame.TeamColor myColor, MoveList moves) {
+    long enemies = board.getOccupancy(opponent(myColor));
+    for (; targets != 0; targets &= targets - 1) {
+      int to = Long.numberOfTrailingZeros(targets);
+      moves.add(PackedMove.encode(from, to, (enemies & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : PackedMove.NONE));
+    }
   }
 
-  protected boolean isValidCapture(ChessBoard board, ChessPosition position, ChessGame.TeamColor myColor) {
-    if (isInBounds(position.getRow(), position.getColumn()) && board.getPiece(position) != null) {
-      return board.getPiece(position).getTeamColor() != myColor;
-    }
-    return false;
+  protected long notMine(ChessBoard board, ChessGame.TeamColor myColor) {
+    return ~board.getOccupancy(myColor);
   }
 
-  protected boolean isValidMoveNoCapture(ChessBoard board, ChessPosition position) {
-    if (isInBounds(position.getRow(), position.getColumn())) {
-      return board.getPiece(position) == null;
-    }
-    return false;
+  protected static ChessGame.TeamColor opponent(ChessGame.TeamColor myColor) {
+    return myColor == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
   }
 }
 
 class BishopMoveCalculator extends PieceMoveCalculator {
-  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
-    List<ChessPosition> validPositions = new ArrayList<ChessPosition>();
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, 1, 1));
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, -1, 1));
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, -1, -1));
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, 1, -1));
-
-    List<ChessMove> moves = new ArrayList<ChessMove>();
-    for (var validPosition : validPositions) {
-      moves.add(new ChessMove(myPosition, validPosition, null));
-    }
-    return moves;
+  public void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves) {
+    long attacks = Attacks.bishop(square, board.getOccupancy());
+    addMoves(board, square, attacks & notMine(board, myColor), myColor, moves);
   }
 }
 
 class RookMoveCalculator extends PieceMoveCalculator {
-  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
-    List<ChessPosition> validPositions = new ArrayList<ChessPosition>();
-
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, 0, 1));
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, 1, 0));
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, 0, -1));
-    validPositions.addAll(exploreDirection(board, myPosition, myColor, -1, 0));
-
-    List<ChessMove> moves = new ArrayList<ChessMove>();
-    for (var validPosition : validPositions) {
-      moves.add(new ChessMove(myPosition, validPosition, null));
-    }
-    return moves;
+  public void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves) {
+    long attacks = Attacks.rook(square, board.getOccupancy());
+    addMoves(board, square, attacks & notMine(board, myColor), myColor, moves);
   }
 }
 
 class QueenMoveCalculator extends PieceMoveCalculator {
-  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
-    BishopMoveCalculator bishopMoves = new BishopMoveCalculator();
-    RookMoveCalculator rookMoves = new RookMoveCalculator();
-    List<ChessMove> moves = bishopMoves.validMoves(board, myPosition, myColor);
-    moves.addAll(rookMoves.validMoves(board, myPosition, myColor));
-    return moves;
+  public void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves) {
+    long attacks = Attacks.queen(square, board.getOccupancy());
+    addMoves(board, square, attacks & notMine(board, myColor), myColor, moves);
   }
 }
 
 class KnightMoveCalculator extends PieceMoveCalculator {
-  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
-    int[][] knightMoves = {
-            {2, 1}, {2, -1}, {-2, 1}, {-2, -1},
-            {1, 2}, {1, -2}, {-1, 2}, {-1, -2}
-    };
-    List<ChessMove> moves = new ArrayList<ChessMove>();
-    for (int[] knightMove : knightMoves) {
-      var newPosition = new ChessPosition(myPosition.getRow() + knightMove[0], myPosition.getColumn() + knightMove[1]);
-      if (isValidMoveNoCapture(board, newPosition) || isValidCapture(board, newPosition, myColor)) {
-        moves.add(new ChessMove(myPosition, newPosition, null));
-      }
-    }
-    return moves;
+  public void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves) {
+    long attacks = Attacks.knight(square);
+    addMoves(board, square, attacks & notMine(board, myColor), myColor, moves);
   }
 }
 
 class KingMoveCalculator extends PieceMoveCalculator {
-  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
-    int[][] kingMoves = {
-            {1,0}, {1,1}, {1,-1}, {0,1}, {0,-1}, {-1,-1}, {-1,0}, {-1,1}
-    };
-    List<ChessMove> moves = new ArrayList<ChessMove>();
-    for (int[] kingMove : kingMoves) {
-      var newPosition = new ChessPosition(myPosition.getRow() + kingMove[0], myPosition.getColumn() + kingMove[1]);
-      if (isValidMoveNoCapture(board, newPosition) || isValidCapture(board, newPosition, myColor)) {
-        moves.add(new ChessMove(myPosition, newPosition, null));
-      }
-    }
+  public void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves) {
+    addMoves(board, square, Attacks.king(square) & notMine(board, myColor), myColor, moves);
 
     //Castling
-    if (checkRightCastle(board, myColor)) {
-      var right = new ChessPosition(myPosition.getRow(), myPosition.getColumn() + 1);
-      var rightTwo = new ChessPosition(myPosition.getRow(), myPosition.getColumn() + 2);
-
-      if (isValidMoveNoCapture(board, right) && isValidMoveNoCapture(board, rightTwo)) {
-        moves.add(new ChessMove(myPosition, rightTwo, null));
+    boolean white = myColor == ChessGame.TeamColor.WHITE;
+    int row = white ? 1 : 8;
+    if (square == Bitboards.square(row, 5)) {
+      if (Bitboards.canCastle(board, white ? ChessBoard.WHITE_RIGHT_CASTLE : ChessBoard.BLACK_RIGHT_CASTLE, row, Bitboards.RIGHT_CASTLE_PATH)) {
+        moves.add(PackedMove.encode(square, square + 2, PackedMove.CASTLE));
       }
-    }
-    if (checkLeftCastle(board,myColor)) {
-      var left = new ChessPosition(myPosition.getRow(), myPosition.getColumn() - 1);
-      var leftTwo = new ChessPosition(myPosition.getRow(), myPosition.getColumn() - 2);
-
-      if (isValidMoveNoCapture(board, left) && isValidMoveNoCapture(board, leftTwo)) {
-        moves.add(new ChessMove(myPosition, leftTwo, null));
+      if (Bitboards.canCastle(board, white ? ChessBoard.WHITE_LEFT_CASTLE : ChessBoard.BLACK_LEFT_CASTLE, row, Bitboards.LEFT_CASTLE_PATH)) {
+        moves.add(PackedMove.encode(square, square - 2, PackedMove.CASTLE));
       }
-
     }
-    return moves;
-  }
-
-  private boolean checkRightCastle(ChessBoard board, ChessGame.TeamColor myColor) {
-    boolean canCastle = true;
-    int row = myColor == ChessGame.TeamColor.WHITE ? 1 : 8;
-    ChessPosition kingPosition = new ChessPosition(row, 5);
-    ChessPosition rightRook = new ChessPosition(row, 8);
-    if (board.getPiece(kingPosition) == null || board.getPiece(rightRook) == null) {
-      return false;
-    }
-    ChessPosition checkNull = new ChessPosition(row, kingPosition.getColumn()+1);
-    while (!checkNull.equals(rightRook)) {
-      if (board.getPiece(checkNull) != null) {
-        canCastle = false;
-      }
-      checkNull = new ChessPosition(row, checkNull.getColumn() + 1);
-    }
-
-    if (board.getPiece(kingPosition).isAlreadyMoved() || board.getPiece(rightRook).isAlreadyMoved()) {
-      canCastle = false;
-    }
-    return canCastle;
-  }
-
-  private boolean checkLeftCastle(ChessBoard board, ChessGame.TeamColor myColor) {
-    boolean canCastle = true;
-    int row = myColor == ChessGame.TeamColor.WHITE ? 1 : 8;
-    ChessPosition kingPosition = new ChessPosition(row, 5);
-    ChessPosition leftRook = new ChessPosition(row, 1);
-    if (board.getPiece(kingPosition) == null || board.getPiece(leftRook) == null) {
-      return false;
-    }
-    ChessPosition checkNull = new ChessPosition(row, kingPosition.getColumn()-1);
-    while (!checkNull.equals(leftRook)) {
-      if (board.getPiece(checkNull) != null) {
-        canCastle = false;
-      }
-      checkNull = new ChessPosition(row, checkNull.getColumn() - 1);
-    }
-
-    if (board.getPiece(kingPosition).isAlreadyMoved() || board.getPiece(leftRook).isAlreadyMoved()) {
-      canCastle = false;
-    }
-    return canCastle;
   }
 }
 
 class PawnMoveCalculator extends PieceMoveCalculator {
-  public List<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition, ChessGame.TeamColor myColor) {
-
-    List<ChessPosition> validPositions = new ArrayList<ChessPosition>();
-    List<ChessMove> moves = new ArrayList<ChessMove>();
+  public void generate(ChessBoard board, int square, ChessGame.TeamColor myColor, MoveList moves) {
+    long empty = ~board.getOccupancy();
+    long enemies = board.getOccupancy(opponent(myColor));
 
-    int direction = 1;
+    int direction = 8;
     int firstRow = 2;
-    int lastRow = 8;
+    int enPassantRow = 6;
+    long lastRow = Bitboards.RANK_8;
     if (myColor == ChessGame.TeamColor.BLACK) {
-      direction = -1;
+      direction = -8;
       firstRow = 7;
-      lastRow = 1;
+      enPassantRow = 3;
+      lastRow = Bitboards.RANK_1;
     }
-    ChessPosition oneForward = new ChessPosition(myPosition.getRow() + direction, myPosition.getColumn());
-    ChessPosition twoForward = new ChessPosition(myPosition.getRow() + 2 * direction, myPosition.getColumn());
-    ChessPosition diagonalLeft = new ChessPosition(myPosition.getRow() + direction, myPosition.getColumn() - 1);
-    ChessPosition diagonalRight = new ChessPosition(myPosition.getRow() + direction, myPosition.getColumn() + 1);
-    ChessPosition left = new ChessPosition(myPosition.getRow(), myPosition.getColumn()-1);
-    ChessPosition right = new ChessPosition(myPosition.getRow(), myPosition.getColumn()+1);
-
-    if (isValidMoveNoCapture(board, oneForward)) {
-      validPositions.add(oneForward);
-      if (myPosition.getRow() == firstRow && isValidMoveNoCapture(board, twoForward)) {
-        validPositions.add(twoForward);
-      }
+
+    if ((Bitboards.bit(square) & lastRow) != 0) {
+      return;
     }
 
-    if (isValidCapture(board, diagonalLeft, myColor)) {
-      validPositions.add(diagonalLeft);
+    int oneForward = square + direction;
+    if ((Bitboards.bit(oneForward) & empty) != 0) {
+      addPawnMove(square, oneForward, lastRow, PackedMove.NONE, moves);
+      int twoForward = oneForward + direction;
+      if (Bitboards.row(square) == firstRow && (Bitboards.bit(twoForward) & empty) != 0) {
+        moves.add(PackedMove.encode(square, twoForward, PackedMove.DOUBLE_PAWN_PUSH));
+      }
     }
-    if (isValidCapture(board, diagonalRight, myColor)) {
-      validPositions.add(diagonalRight);
+
+    for (long captures = Attacks.pawn(myColor, square) & enemies; captures != 0; captures &= captures - 1) {
+      addPawnMove(square, Long.numberOfTrailingZeros(captures), lastRow, PackedMove.CAPTURE, moves);
     }
 
     //En Passant
-    if (isValidCapture(board, left, myColor) && board.getPiece(left).getEnPassantStatus()) {
-      validPositions.add(diagonalLeft);
-    }
-    if (isValidCapture(board, right, myColor) && board.getPiece(right).getEnPassantStatus()) {
-      validPositions.add(diagonalRight);
+    int enPassant = board.getEnPassantSquare();
+    if (enPassant >= 0 && Bitboards.row(enPassant) == enPassantRow
+            && (Attacks.pawn(myColor, square) & Bitboards.bit(enPassant)) != 0) {
+      moves.add(PackedMove.encode(square, enPassant, PackedMove.CAPTURE | PackedMove.EN_PASSANT));
     }
+  }
 
-    for (ChessPosition endPosition : validPositions) {
-      if (endPosition.getRow() == lastRow) {
-        moves.add(new ChessMove(myPosition, endPosition, ChessPiece.PieceType.BISHOP));
-        moves.add(new ChessMove(myPosition, endPosition, ChessPiece.PieceType.QUEEN));
-        moves.add(new ChessMove(myPosition, endPosition, ChessPiece.PieceType.ROOK));
-        moves.add(new ChessMove(myPosition, endPosition, ChessPiece.PieceType.KNIGHT));
-      }
-      else {
-        moves.add(new ChessMove(myPosition, endPosition, null));
-      }
+  private void addPawnMove(int from, int to, long lastRow, int flags, MoveList moves) {
+    if ((Bitboards.bit(to) & lastRow) == 0) {
+      moves.add(PackedMove.encode(from, to, flags));
+      return;
+    }
+    for (ChessPiece.PieceType promotion : Bitboards.PROMOTIONS) {
+      moves.add(PackedMove.encode(from, to, promotion, flags));
     }
-
-    return moves;
   }
 }
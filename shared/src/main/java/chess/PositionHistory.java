@@ -0,0 +1,103 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * The position keys of the moves played in a game, for spotting repeated
+ * positions.
+ * <p>
+ * Before each move the key of the position it was played from is pushed, with
+ * the halfmove clock of that position so the clock can be restored when the
+ * move is taken back. A small table counts how many stored keys share each
+ * slot of low key bits; while that count is below the number of repetitions
+ * asked about, the position cannot have repeated and no keys are compared.
+ * Only when the count is high enough are the keys since the last capture or
+ * pawn move compared, so the usual cost per move is a couple of array reads.
+ */
+final class PositionHistory {
+
+    // a power of two, so a key's low bits pick its slot
+    private static final int SLOTS = 1024;
+
+    private long[] keys = new long[64];
+    private int[] clocks = new int[64];
+    private int size;
+    // made on the first push, so games that are only looked at pay nothing
+    private int[] slotCounts;
+
+    /**
+     * Records the position a move is about to be played from
+     */
+    void push(long key, int halfmoveClock) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            clocks = Arrays.copyOf(clocks, size * 2);
+        }
+        if (slotCounts == null) {
+            slotCounts = new int[SLOTS];
+        }
+        keys[size] = key;
+        clocks[size] = halfmoveClock;
+        size++;
+        slotCounts[slot(key)]++;
+    }
+
+    /**
+     * Forgets the last position pushed
+     *
+     * @return the halfmove clock it was pushed with
+     * @throws IllegalStateException if nothing has been pushed
+     */
+    int pop() {
+        if (size == 0) {
+            throw new IllegalStateException("No position to take back");
+        }
+        size--;
+        slotCounts[slot(keys[size])]--;
+        return clocks[size];
+    }
+
+    /**
+     * @param key           key of the current position
+     * @param halfmoveClock moves since the last capture or pawn move; no
+     *                      position older than that can be the same
+     * @param times         how many occurrences, counting the current one
+     * @return true if the current position has occurred at least times times
+     */
+    boolean isRepeated(long key, int halfmoveClock, int times) {
+        if (slotCounts == null || slotCounts[slot(key)] < times - 1) {
+            return false;
+        }
+        int seen = 1;
+        // the same team must be to move, so only every other position can match
+        int oldest = Math.max(0, size - halfmoveClock);
+        for (int i = size - 2; i >= oldest; i -= 2) {
+            if (keys[i] == key && ++seen >= times) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the key pushed before move index, counting from 0
+     */
+    long key(int index) {
+        return keys[index];
+    }
+
+    void clear() {
+        size = 0;
+        if (slotCounts != null) {
+            Arrays.fill(slotCounts, 0);
+        }
+    }
+
+    private static int slot(long key) {
+        return (int) key & (SLOTS - 1);
+    }
+}
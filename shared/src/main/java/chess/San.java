@@ -0,0 +1,226 @@
+package chess;
+
+/**
+ * Reads and writes moves in Standard Algebraic Notation, the notation of
+ * PGN game records, e.g. {@code e4}, {@code Nbd7}, {@code exd5},
+ * {@code O-O-O} or {@code e8=Q+}.
+ * <p>
+ * A SAN move only makes sense in its position: it names the piece type and
+ * the end square, and the start square only as far as needed to tell two
+ * pieces apart. Reading is lenient about what PGN files in the wild contain:
+ * check and annotation marks are ignored, castling may be written with
+ * zeros and a promotion may leave out the '='.
+ */
+public final class San {
+
+    private San() {
+    }
+
+    /**
+     * @return the packed legal move the SAN string describes in the game's
+     * current position, for the team whose turn it is
+     * @throws IllegalArgumentException if the string is not SAN, or describes
+     *                                  no legal move or more than one
+     */
+    public static int parse(ChessGame game, String san) {
+        String text = stripSuffix(san);
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            // the king ends on the g file castling short and on the c file long
+            int column = text.length() == 3 ? 7 : 3;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (PackedMove.hasFlags(move, PackedMove.CASTLE) && PackedMove.to(move) % 8 + 1 == column) {
+                    return move;
+                }
+            }
+            throw new IllegalArgumentException("Castling is not legal here: " + san);
+        }
+
+        int end = text.length();
+        ChessPiece.PieceType promotion = null;
+        if (end > 0 && promotionType(text.charAt(end - 1)) != null) {
+            promotion = promotionType(text.charAt(end - 1));
+            end--;
+            if (end > 0 && text.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        if (end < 2 || !isFile(text.charAt(end - 2)) || !isRank(text.charAt(end - 1))) {
+            throw new IllegalArgumentException("Not a SAN move: " + san);
+        }
+        int to = (text.charAt(end - 1) - '1') * 8 + (text.charAt(end - 2) - 'a');
+
+        int start = 0;
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        if (pieceType(text.charAt(0)) != null) {
+            type = pieceType(text.charAt(0));
+            start = 1;
+        }
+        int fromColumn = -1;
+        int fromRow = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (isFile(c) && fromColumn < 0 && fromRow < 0) {
+                fromColumn = c - 'a';
+            } else if (isRank(c) && fromRow < 0) {
+                fromRow = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                throw new IllegalArgumentException("Not a SAN move: " + san);
+            }
+        }
+
+        ChessBoard board = game.getBoard();
+        int found = PackedMove.NONE;
+        int matches = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) == to && PackedMove.promotion(move) == promotion
+                    && board.getPiece(from).getPieceType() == type
+                    && (fromColumn < 0 || from % 8 == fromColumn) && (fromRow < 0 || from / 8 == fromRow)) {
+                found = move;
+                matches++;
+            }
+        }
+        if (matches == 0) {
+            throw new IllegalArgumentException("Move is not legal here: " + san);
+        }
+        if (matches > 1) {
+            throw new IllegalArgumentException("Ambiguous move: " + san);
+        }
+        return found;
+    }
+
+    /**
+     * @return the SAN string of a legal packed move in the game's current
+     * position, marked '+' if it gives check and '#' if it gives mate
+     */
+    public static String format(ChessGame game, int move) {
+        ChessBoard board = game.getBoard();
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece.PieceType type = board.getPiece(from).getPieceType();
+        StringBuilder san = new StringBuilder(8);
+
+        if (PackedMove.hasFlags(move, PackedMove.CASTLE)) {
+            san.append(to % 8 == 6 ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = board.getPiece(to) != null || PackedMove.hasFlags(move, PackedMove.EN_PASSANT);
+            if (type == ChessPiece.PieceType.PAWN) {
+                if (capture) {
+                    san.append(file(from));
+                }
+            } else {
+                san.append(letter(type));
+                appendDisambiguation(san, game, move, type);
+            }
+            if (capture) {
+                san.append('x');
+            }
+            san.append(file(to)).append((char) ('1' + to / 8));
+            ChessPiece.PieceType promotion = PackedMove.promotion(move);
+            if (promotion != null) {
+                san.append('=').append(letter(promotion));
+            }
+        }
+
+        game.makeMove(move);
+        ChessGame.TeamColor opponent = game.getTeamTurn();
+        if (game.isInCheck(opponent)) {
+            MoveList replies = new MoveList();
+            game.validMoves(opponent, replies);
+            san.append(replies.isEmpty() ? '#' : '+');
+        }
+        game.unmakeMove();
+        return san.toString();
+    }
+
+    /**
+     * Adds the start file, rank or both when another piece of the same type
+     * could also move to the end square
+     */
+    private static void appendDisambiguation(StringBuilder san, ChessGame game, int move, ChessPiece.PieceType type) {
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+        ChessBoard board = game.getBoard();
+        int from = PackedMove.from(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < moves.size(); i++) {
+            int other = PackedMove.from(moves.get(i));
+            if (other != from && PackedMove.to(moves.get(i)) == PackedMove.to(move)
+                    && board.getPiece(other).getPieceType() == type) {
+                ambiguous = true;
+                sameFile |= other % 8 == from % 8;
+                sameRank |= other / 8 == from / 8;
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            san.append(file(from));
+        } else if (!sameRank) {
+            san.append((char) ('1' + from / 8));
+        } else {
+            san.append(file(from)).append((char) ('1' + from / 8));
+        }
+    }
+
+    private static String stripSuffix(String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return san.substring(0, end);
+    }
+
+    private static ChessPiece.PieceType pieceType(char c) {
+        return switch (c) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            default -> null;
+        };
+    }
+
+    // some writers put the promotion piece in lower case
+    private static ChessPiece.PieceType promotionType(char c) {
+        return switch (c) {
+            case 'Q', 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'B', 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'N', 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'R', 'r' -> ChessPiece.PieceType.ROOK;
+            default -> null;
+        };
+    }
+
+    private static char letter(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case ROOK -> 'R';
+            case PAWN -> 'P';
+        };
+    }
+
+    private static char file(int square) {
+        return (char) ('a' + square % 8);
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+}
@@ -0,0 +1,129 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Every legal move of one team, grouped by the square the move starts from.
+ * <p>
+ * The {@link PackedMove packed moves} sit in one int array, sorted by origin
+ * square, with a second array giving where each square's moves begin: the
+ * moves from square s are those at indexes {@code offset(s)} up to but not
+ * including {@code offset(s + 1)}. Looking up one piece's moves is therefore
+ * two array reads, and walking all of them needs no per-piece collections.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public final class TeamMoves {
+
+    private final ChessGame.TeamColor team;
+    private final int[] moves;
+    private final int[] offsets = new int[65];
+    private final long origins;
+
+    /**
+     * Groups the moves of a generated list by origin square; the list itself
+     * is not changed
+     */
+    TeamMoves(ChessGame.TeamColor team, MoveList generated) {
+        this.team = team;
+        int size = generated.size();
+        // counting sort: count the moves of each square, turn the counts into
+        // start offsets, then drop each move into the next slot of its square
+        long from = 0;
+        for (int i = 0; i < size; i++) {
+            int square = PackedMove.from(generated.get(i));
+            offsets[square + 1]++;
+            from |= Bitboards.bit(square);
+        }
+        for (int square = 0; square < 64; square++) {
+            offsets[square + 1] += offsets[square];
+        }
+        int[] next = new int[64];
+        System.arraycopy(offsets, 0, next, 0, 64);
+        moves = new int[size];
+        for (int i = 0; i < size; i++) {
+            int move = generated.get(i);
+            moves[next[PackedMove.from(move)]++] = move;
+        }
+        origins = from;
+    }
+
+    /**
+     * @return the team these moves belong to
+     */
+    public ChessGame.TeamColor getTeam() {
+        return team;
+    }
+
+    public int size() {
+        return moves.length;
+    }
+
+    public boolean isEmpty() {
+        return moves.length == 0;
+    }
+
+    /**
+     * @return the packed move at the given index, in order of origin square
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @param square a square index from 0 to 64; 64 gives the total size
+     * @return the index of the first move from the square
+     */
+    public int offset(int square) {
+        return offsets[square];
+    }
+
+    /**
+     * @return how many moves start from the square
+     */
+    public int count(int square) {
+        return offsets[square + 1] - offsets[square];
+    }
+
+    /**
+     * @return bitboard of the squares with at least one legal move
+     */
+    public long origins() {
+        return origins;
+    }
+
+    /**
+     * Appends the packed moves starting from the square to moves
+     */
+    public void movesFrom(int square, MoveList moves) {
+        for (int i = offsets[square]; i < offsets[square + 1]; i++) {
+            moves.add(this.moves[i]);
+        }
+    }
+
+    /**
+     * @return the moves starting from the given position, empty if there are
+     * none
+     */
+    public Collection<ChessMove> movesFrom(ChessPosition position) {
+        int square = Bitboards.square(position);
+        List<ChessMove> chessMoves = new ArrayList<>(count(square));
+        for (int i = offsets[square]; i < offsets[square + 1]; i++) {
+            chessMoves.add(PackedMove.toChessMove(moves[i]));
+        }
+        return chessMoves;
+    }
+
+    /**
+     * @return every move as a ChessMove, in order of origin square
+     */
+    public List<ChessMove> toChessMoves() {
+        List<ChessMove> chessMoves = new ArrayList<>(moves.length);
+        for (int move : moves) {
+            chessMoves.add(PackedMove.toChessMove(move));
+        }
+        return chessMoves;
+    }
+}
@@ -0,0 +1,92 @@
+package chess;
+
+/**
+ * Random 64-bit keys for Zobrist hashing.
+ * <p>
+ * A position's key is the XOR of one key per piece on its square, one for the
+ * castling rights that remain, one for the column of a pawn that can be taken
+ * en passant and one if it is black's turn. Moving a piece only touches the
+ * keys of the squares involved, so keys can be kept up to date as moves are
+ * played instead of being recomputed from the whole board.
+ * <p>
+ * The keys come from a fixed seed, so a position has the same key in every run
+ * and keys may be stored (for example in an opening book).
+ */
+public final class Zobrist {
+
+    private static final long[][] PIECES = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (long[] squares : PIECES) {
+            for (int square = 0; square < 64; square++) {
+                seed += 0x9E3779B97F4A7C15L;
+                squares[square] = mix(seed);
+            }
+        }
+        // each castling right gets its own key, and a set of rights is the XOR
+        // of its members so that losing one right is a single XOR
+        long[] rights = new long[4];
+        for (int i = 0; i < rights.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            rights[i] = mix(seed);
+        }
+        for (int mask = 1; mask < CASTLING.length; mask++) {
+            CASTLING[mask] = CASTLING[mask & (mask - 1)] ^ rights[Integer.numberOfTrailingZeros(mask)];
+        }
+        for (int column = 0; column < EN_PASSANT.length; column++) {
+            seed += 0x9E3779B97F4A7C15L;
+            EN_PASSANT[column] = mix(seed);
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        BLACK_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    // SplitMix64 finalizer; spelled out rather than using a library generator
+    // so the keys can never change underneath stored data
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the key of a piece of the given team and type on a square
+     */
+    public static long piece(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return PIECES[Bitboards.pieceIndex(color, type)][square];
+    }
+
+    static long piece(int pieceIndex, int square) {
+        return PIECES[pieceIndex][square];
+    }
+
+    /**
+     * @param rights castling rights as a mask of the ChessBoard *_CASTLE constants
+     * @return the key of a set of castling rights, 0 if there are none
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * @param column column (1 to 8) of the pawn that can be taken en passant
+     * @return the key of an en passant capture on that column
+     */
+    public static long enPassant(int column) {
+        return EN_PASSANT[column - 1];
+    }
+
+    /**
+     * @return the key XORed in when it is black's turn
+     */
+    public static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}
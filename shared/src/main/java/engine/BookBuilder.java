@@ -0,0 +1,175 @@
+package engine;
+
+import chess.ChessGame;
+import chess.PackedMove;
+import chess.Pgn;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles PGN game collections into an {@link OpeningBook} file.
+ * <p>
+ * The first moves of every game are replayed, and each move counts towards
+ * the weight of its position and move: two points if the side that played
+ * it went on to win, one for a draw or an unknown result and none for a
+ * loss. A game is used up to its first move that cannot be read. Moves
+ * played in fewer than a minimum number of games, or that never scored, are
+ * left out.
+ * <p>
+ * Usage:
+ * <pre>
+ *  BookBuilder [-plies n] [-min n] &lt;book&gt; &lt;pgn&gt;...
+ * </pre>
+ */
+public final class BookBuilder {
+
+    public static final int DEFAULT_PLIES = 20;
+    public static final int DEFAULT_MIN_GAMES = 3;
+
+    private record Key(long position, int move) {
+    }
+
+    private final int plies;
+    private final int minGames;
+    // games played and weight of each position and move
+    private final Map<Key, long[]> counts = new HashMap<>();
+    private int games;
+    private int unreadable;
+
+    /**
+     * @param plies    the number of moves of each game to use
+     * @param minGames the number of games a move must be played in to be
+     *                 written
+     */
+    public BookBuilder(int plies, int minGames) {
+        if (plies < 1 || minGames < 1) {
+            throw new IllegalArgumentException("Book plies and minimum games must be positive");
+        }
+        this.plies = plies;
+        this.minGames = minGames;
+    }
+
+    /**
+     * Counts the moves of a game
+     */
+    public void add(Pgn.Game game) {
+        games++;
+        ChessGame.TeamColor winner = game.winner();
+        boolean draw = winner == null;
+        int played;
+        try {
+            played = Pgn.play(game, plies, (position, move) -> {
+                long[] count = counts.computeIfAbsent(new Key(position.positionKey(), PackedMove.withoutFlags(move)),
+                        key -> new long[2]);
+                count[0]++;
+                count[1] += draw ? 1 : winner == position.getTeamTurn() ? 2 : 0;
+            });
+        } catch (IllegalArgumentException e) {
+            // a bad FEN tag
+            played = 0;
+        }
+        if (played < Math.min(plies, game.moves().size())) {
+            unreadable++;
+        }
+    }
+
+    /**
+     * Reads and counts every game of a PGN file
+     */
+    public void addAll(Path pgn) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(pgn)) {
+            Pgn.read(reader, this::add);
+        }
+    }
+
+    /**
+     * @return the number of games added
+     */
+    public int games() {
+        return games;
+    }
+
+    /**
+     * @return the number of games with a move that could not be read
+     */
+    public int unreadable() {
+        return unreadable;
+    }
+
+    /**
+     * Writes the book of the games added so far
+     *
+     * @return the number of entries written
+     */
+    public int write(Path book) throws IOException {
+        List<Map.Entry<Key, long[]>> entries = new ArrayList<>();
+        for (Map.Entry<Key, long[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] >= minGames && entry.getValue()[1] > 0) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.<Map.Entry<Key, long[]>>comparingLong(entry -> entry.getKey().position())
+                .thenComparingLong(entry -> -entry.getValue()[1]));
+
+        try (OutputStream file = Files.newOutputStream(book);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<Key, long[]> entry : entries) {
+                out.writeLong(entry.getKey().position());
+                out.writeInt(entry.getKey().move());
+                out.writeInt((int) Math.min(entry.getValue()[1], Integer.MAX_VALUE));
+            }
+        }
+        return entries.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int plies = DEFAULT_PLIES;
+        int minGames = DEFAULT_MIN_GAMES;
+        int next = 0;
+        while (next + 1 < args.length && args[next].startsWith("-")) {
+            switch (args[next]) {
+                case "-plies" -> plies = Integer.parseInt(args[next + 1]);
+                case "-min" -> minGames = Integer.parseInt(args[next + 1]);
+                default -> {
+                    usage();
+                    return;
+                }
+            }
+            next += 2;
+        }
+        if (args.length - next < 2) {
+            usage();
+            return;
+        }
+
+        long start = System.nanoTime();
+        BookBuilder builder = new BookBuilder(plies, minGames);
+        for (int i = next + 1; i < args.length; i++) {
+            builder.addAll(Path.of(args[i]));
+        }
+        int written = builder.write(Path.of(args[next]));
+        System.out.printf("%d games (%d with unreadable moves), %d book entries in %.1f s%n", builder.games(),
+                builder.unreadable(), written, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void usage() {
+        System.out.println("""
+                Usage:
+                  BookBuilder [-plies n] [-min n] <book> <pgn>...
+                    -plies n   moves of each game to use, default 20
+                    -min n     games a move must be played in, default 3""");
+    }
+}
@@ -0,0 +1,229 @@
+package engine;
+
+import chess.Attacks;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.util.Arrays;
+
+/**
+ * The endings the tablebases cover: a king and one or two pieces against a
+ * lone king, and how their positions are numbered.
+ * <p>
+ * A position is a square for each piece, in slot order: the strong king, the
+ * weak king, then the strong side's other pieces in the order of
+ * {@link #pieces}. Positions are always seen from the strong side, as if it
+ * were white. Symmetric positions share a number: without pawns the board can
+ * be mirrored and turned so the strong king stands in the a1-d1-d4 triangle,
+ * which leaves 10 squares for it; with a pawn only left-right mirroring keeps
+ * the position the same, so the pawn stands on files a to d, which leaves 24
+ * squares. The number is that leading square's place in its list, followed by
+ * the square of each other piece in base 64.
+ */
+enum Endgame {
+
+    KQK(ChessPiece.PieceType.QUEEN),
+    KRK(ChessPiece.PieceType.ROOK),
+    KPK(ChessPiece.PieceType.PAWN),
+    KBNK(ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT);
+
+    static final int STRONG_KING = 0;
+    static final int WEAK_KING = 1;
+    static final int FIRST_PIECE = 2;
+
+    // squares the leading piece may stand on, without and with a pawn
+    private static final int TRIANGLE_SIZE = 10;
+    private static final int PAWN_SIZE = 24;
+
+    private static final int[] TRIANGLE = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[TRIANGLE_SIZE];
+    private static final int[] PAWN_SQUARE_INDEX = new int[64];
+    private static final int[] PAWN_SQUARES = new int[PAWN_SIZE];
+
+    static {
+        Arrays.fill(TRIANGLE, -1);
+        Arrays.fill(PAWN_SQUARE_INDEX, -1);
+        int next = 0;
+        for (int row = 0; row < 4; row++) {
+            for (int column = row; column < 4; column++) {
+                TRIANGLE[row * 8 + column] = next;
+                TRIANGLE_SQUARES[next++] = row * 8 + column;
+            }
+        }
+        next = 0;
+        for (int row = 1; row < 7; row++) {
+            for (int column = 0; column < 4; column++) {
+                PAWN_SQUARE_INDEX[row * 8 + column] = next;
+                PAWN_SQUARES[next++] = row * 8 + column;
+            }
+        }
+    }
+
+    private final ChessPiece.PieceType[] pieces;
+    private final boolean pawn;
+    private final int slots;
+    private final int size;
+    private final long whiteSignature;
+    private final long blackSignature;
+
+    Endgame(ChessPiece.PieceType... pieces) {
+        this.pieces = pieces;
+        pawn = pieces[0] == ChessPiece.PieceType.PAWN;
+        slots = FIRST_PIECE + pieces.length;
+        size = (pawn ? PAWN_SIZE : TRIANGLE_SIZE) << (6 * (slots - 1));
+        long kings = ChessBoard.signature(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)
+                + ChessBoard.signature(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
+        long white = kings;
+        long black = kings;
+        for (ChessPiece.PieceType type : pieces) {
+            white += ChessBoard.signature(ChessGame.TeamColor.WHITE, type);
+            black += ChessBoard.signature(ChessGame.TeamColor.BLACK, type);
+        }
+        whiteSignature = white;
+        blackSignature = black;
+    }
+
+    /**
+     * @return the strong side's pieces besides its king, in slot order
+     */
+    ChessPiece.PieceType[] pieces() {
+        return pieces;
+    }
+
+    /**
+     * @return the number of pieces, kings included
+     */
+    int slots() {
+        return slots;
+    }
+
+    /**
+     * @return the number of positions with a given side to move
+     */
+    int size() {
+        return size;
+    }
+
+    String fileName() {
+        return name().toLowerCase() + ".tb";
+    }
+
+    /**
+     * @return the ending of a board's material, or null if no table covers it
+     */
+    static Endgame of(long materialSignature) {
+        for (Endgame endgame : values()) {
+            if (endgame.whiteSignature == materialSignature || endgame.blackSignature == materialSignature) {
+                return endgame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if white is the strong side of a board of this ending
+     */
+    boolean isWhiteStrong(long materialSignature) {
+        return materialSignature == whiteSignature;
+    }
+
+    /**
+     * @return the number of a position in canonical form
+     */
+    int index(int[] squares) {
+        int leadSlot = pawn ? FIRST_PIECE : STRONG_KING;
+        int index = pawn ? PAWN_SQUARE_INDEX[squares[leadSlot]] : TRIANGLE[squares[leadSlot]];
+        for (int slot = 0; slot < slots; slot++) {
+            if (slot != leadSlot) {
+                index = (index << 6) | squares[slot];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Fills in the squares of a numbered position
+     */
+    void decode(int index, int[] squares) {
+        int leadSlot = pawn ? FIRST_PIECE : STRONG_KING;
+        for (int slot = slots - 1; slot >= 0; slot--) {
+            if (slot != leadSlot) {
+                squares[slot] = index & 63;
+                index >>>= 6;
+            }
+        }
+        squares[leadSlot] = pawn ? PAWN_SQUARES[index] : TRIANGLE_SQUARES[index];
+    }
+
+    /**
+     * Moves a position, seen from the strong side, to the one of its
+     * symmetric forms that has a number. Without pawns, a strong king on the
+     * a1-d4 diagonal leaves two forms in the triangle, told apart by the first
+     * other piece off the diagonal, which is put below it.
+     */
+    void canonicalize(int[] squares) {
+        if (pawn) {
+            if ((squares[FIRST_PIECE] & 7) > 3) {
+                transform(squares, 7);
+            }
+            return;
+        }
+        int king = squares[STRONG_KING];
+        if ((king & 7) > 3) {
+            transform(squares, 7);
+        }
+        if (squares[STRONG_KING] >>> 3 > 3) {
+            transform(squares, 56);
+        }
+        king = squares[STRONG_KING];
+        if (king >>> 3 > (king & 7)) {
+            transpose(squares);
+        } else if (king >>> 3 == (king & 7)) {
+            for (int slot = WEAK_KING; slot < slots; slot++) {
+                int row = squares[slot] >>> 3;
+                int column = squares[slot] & 7;
+                if (row != column) {
+                    if (row > column) {
+                        transpose(squares);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flips a position with black as the strong side so white is
+     */
+    void flipColors(int[] squares) {
+        transform(squares, 56);
+    }
+
+    private void transform(int[] squares, int mask) {
+        for (int slot = 0; slot < slots; slot++) {
+            squares[slot] ^= mask;
+        }
+    }
+
+    private void transpose(int[] squares) {
+        for (int slot = 0; slot < slots; slot++) {
+            int square = squares[slot];
+            squares[slot] = ((square & 7) << 3) | (square >>> 3);
+        }
+    }
+
+    /**
+     * @return the squares attacked by a strong piece of the given type
+     */
+    static long attacks(ChessPiece.PieceType type, int square, long occupied) {
+        return switch (type) {
+            case KING -> Attacks.king(square);
+            case QUEEN -> Attacks.queen(square, occupied);
+            case BISHOP -> Attacks.bishop(square, occupied);
+            case KNIGHT -> Attacks.knight(square);
+            case ROOK -> Attacks.rook(square, occupied);
+            case PAWN -> Attacks.pawn(ChessGame.TeamColor.WHITE, square);
+        };
+    }
+}
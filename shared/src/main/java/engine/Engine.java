@@ -0,0 +1,602 @@
+package engine;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Picks a move for the team whose turn it is.
+ * <p>
+ * The search is an alpha-beta (principal variation) search run with iterative
+ * deepening: depth 1, then 2 and so on until a limit is reached, each depth
+ * trying the previous best move first. At the end of the main search captures
+ * and promotions are followed until the position is quiet (quiescence search),
+ * so a capture that loses the capturing piece is not mistaken for a gain.
+ * Moves are tried in order of captures by most valuable victim and least
+ * valuable attacker (MVV-LVA), then quiet moves that caused a cutoff at the
+ * same ply ("killer" moves), then the rest by how often they caused cutoffs
+ * before (history). Positions that repeat, fall under the fifty-move rule or
+ * lack mating material score as draws.
+ * <p>
+ * What the search learns about each position is kept in a
+ * {@link TranspositionTable}: a position reached again, by another move order
+ * or in a later iteration, returns its stored score if it was searched deep
+ * enough, and otherwise tries its stored best move first.
+ * <p>
+ * Given a {@link Tablebase}, the search takes the score of any position it
+ * covers from it instead of searching on, and when every move of the root
+ * position leads to a covered position or to a draw by lack of material, the
+ * best of them is played without searching at all: the winning side takes the
+ * shortest way to mate and the losing side the longest.
+ * <p>
+ * The node count, the time used by the searching thread and the wall time
+ * are checked every few thousand nodes, so a search stops within a small
+ * fraction of its budget. The game is searched in place with make and unmake
+ * and is left as it was found.
+ * <p>
+ * An Engine keeps per-search tables, so each thread needs its own; the
+ * transposition table may be shared between engines, which is how
+ * {@link ParallelSearch} puts several threads to work on one position.
+ */
+public final class Engine {
+
+    /**
+     * The move of a result when there is no legal move
+     */
+    public static final int NO_MOVE = 0;
+    /**
+     * The score of giving checkmate now; mate in n plies scores MATE - n
+     */
+    public static final int MATE = 30000;
+
+    private static final int INFINITY = 32000;
+    private static final int MAX_PLY = 128;
+    // the limits are checked whenever the node count has these bits clear
+    private static final int CHECK_INTERVAL = 2047;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // a table of this size is made for an engine not given one
+    private static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    // move ordering bands, best first
+    private static final int HASH_MOVE_SCORE = 1 << 28;
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int KILLER_SCORE = 1 << 22;
+    private static final int HISTORY_LIMIT = 1 << 20;
+    // how much a capture is worth for ordering, in PieceType order
+    private static final int[] VICTIM_ORDER = {6, 5, 3, 2, 4, 1};
+
+    private final MoveList[] moves = new MoveList[MAX_PLY];
+    private final int[][] orderScores = new int[MAX_PLY][256];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][][] history = new int[2][64][64];
+    private final TranspositionTable table;
+    private final Tablebase tablebase;
+
+    private ChessGame game;
+    private ChessBoard board;
+    private long nodes;
+    private boolean stopped;
+    private long maxNodes;
+    private long startNanos;
+    private long wallNanos;
+    private long startCpuNanos;
+    private long cpuNanos;
+    private boolean cpuTimed;
+    private AtomicBoolean stopSignal;
+    private int rootBest;
+
+    public Engine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * @param table where the engine keeps what it learns about positions; may
+     *              be shared with other engines
+     */
+    public Engine(TranspositionTable table) {
+        this(table, null);
+    }
+
+    /**
+     * @param table     where the engine keeps what it learns about positions;
+     *                  may be shared with other engines
+     * @param tablebase perfect play in the endings it covers, or null
+     */
+    public Engine(TranspositionTable table, Tablebase tablebase) {
+        this.table = table;
+        this.tablebase = tablebase;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            moves[ply] = new MoveList();
+        }
+    }
+
+    /**
+     * @return true if the score is a forced checkmate for one side
+     */
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) >= MATE - MAX_PLY;
+    }
+
+    /**
+     * Searches for the best move of the team whose turn it is
+     *
+     * @return the best move found within the limits, with its score
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        return search(game, limits, 1, null, true);
+    }
+
+    /**
+     * Searches as one of several engines working on the same position
+     *
+     * @param firstDepth the depth of the first iteration
+     * @param stopSignal stops the search, as a limit would, once set
+     * @param newSearch  whether this search starts a new generation of the
+     *                   transposition table; only one of the engines should
+     */
+    SearchResult search(ChessGame game, SearchLimits limits, int firstDepth, AtomicBoolean stopSignal,
+                        boolean newSearch) {
+        start(game, limits, stopSignal, newSearch);
+        try {
+            return iterate(limits, firstDepth);
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Runs the iterative deepening of a search that has been started
+     */
+    private SearchResult iterate(SearchLimits limits, int firstDepth) {
+        ChessGame.TeamColor us = game.getTeamTurn();
+        MoveList root = moves[0];
+        root.clear();
+        game.validMoves(us, root);
+        if (root.isEmpty()) {
+            return new SearchResult(NO_MOVE, game.isInCheck(us) ? -MATE : 0, 0, 0, System.nanoTime() - startNanos);
+        }
+        SearchResult solved = probeRoot(root);
+        if (solved != null) {
+            return solved;
+        }
+        sortRoot(root, us);
+
+        int bestMove = root.get(0);
+        int bestScore = 0;
+        int completed = 0;
+        for (int depth = Math.min(firstDepth, limits.maxDepth()); depth <= limits.maxDepth(); depth++) {
+            int score = searchRoot(depth, root);
+            if (stopped) {
+                // a cut-short first iteration still beats an unsearched move
+                if (completed == 0 && rootBest != NO_MOVE) {
+                    bestMove = rootBest;
+                    bestScore = score;
+                }
+                break;
+            }
+            bestMove = rootBest;
+            bestScore = score;
+            completed = depth;
+            table.store(game.positionKey(), bestMove, score, depth, TranspositionTable.EXACT);
+            if (isMateScore(score) && MATE - Math.abs(score) <= depth) {
+                break;
+            }
+            // the next iteration takes several times longer than this one, so
+            // only start it with most of the budget left
+            if (usedMoreThanHalf()) {
+                break;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, completed, nodes, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Lets go of the searched game, whichever way the search ended
+     */
+    private void finish() {
+        this.game = null;
+        this.board = null;
+        this.stopSignal = null;
+    }
+
+    private void start(ChessGame game, SearchLimits limits, AtomicBoolean stopSignal, boolean newSearch) {
+        this.game = game;
+        this.board = game.getBoard();
+        nodes = 0;
+        stopped = false;
+        this.stopSignal = stopSignal;
+        maxNodes = limits.maxNodes();
+        wallNanos = toNanos(limits.wallMillis());
+        cpuNanos = toNanos(limits.cpuMillis());
+        cpuTimed = cpuNanos != Long.MAX_VALUE && THREADS.isCurrentThreadCpuTimeSupported();
+        if (cpuNanos != Long.MAX_VALUE && !cpuTimed) {
+            wallNanos = Math.min(wallNanos, cpuNanos);
+        }
+        startCpuNanos = cpuTimed ? THREADS.getCurrentThreadCpuTime() : 0;
+        startNanos = System.nanoTime();
+
+        if (newSearch) {
+            table.newSearch();
+        }
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = NO_MOVE;
+            plyKillers[1] = NO_MOVE;
+        }
+        // keep what earlier searches learned, but let this one outweigh it
+        for (int[][] side : history) {
+            for (int[] from : side) {
+                for (int to = 0; to < 64; to++) {
+                    from[to] >>= 2;
+                }
+            }
+        }
+    }
+
+    private static long toNanos(long millis) {
+        return millis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : millis * 1_000_000;
+    }
+
+    private void checkLimits() {
+        if ((stopSignal != null && stopSignal.get()) || nodes >= maxNodes || System.nanoTime() - startNanos >= wallNanos
+                || (cpuTimed && THREADS.getCurrentThreadCpuTime() - startCpuNanos >= cpuNanos)) {
+            stopped = true;
+        }
+    }
+
+    private boolean usedMoreThanHalf() {
+        return nodes >= maxNodes / 2
+                || System.nanoTime() - startNanos >= wallNanos / 2
+                || (cpuTimed && THREADS.getCurrentThreadCpuTime() - startCpuNanos >= cpuNanos / 2);
+    }
+
+    /**
+     * @return the best move by the tablebase, or null unless it covers every
+     * move of the root position
+     */
+    private SearchResult probeRoot(MoveList root) {
+        if (tablebase == null || Long.bitCount(board.getOccupancy()) > 5) {
+            return null;
+        }
+        int bestMove = NO_MOVE;
+        int bestScore = -INFINITY;
+        for (int i = 0; i < root.size(); i++) {
+            int move = root.get(i);
+            game.makeMove(move);
+            int score = board.isInsufficientMaterial() ? 0 : tablebase.probe(board, game.getTeamTurn());
+            game.unmakeMove();
+            if (score == Tablebase.NOT_FOUND) {
+                return null;
+            }
+            score = fromChild(score);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, 1, root.size(), System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the tablebase score of the position for the side to move, mate
+     * scores counted from the root as the search counts them, or
+     * {@link Tablebase#NOT_FOUND}
+     */
+    private int probe(ChessGame.TeamColor us, int ply) {
+        if (tablebase == null) {
+            return Tablebase.NOT_FOUND;
+        }
+        int score = tablebase.probe(board, us);
+        if (score == Tablebase.NOT_FOUND || score == 0) {
+            return score;
+        }
+        return score > 0 ? score - ply : score + ply;
+    }
+
+    /**
+     * @return a score of the position after a move, for the side to move in
+     * it, as a score of the move; mates are a ply further away
+     */
+    private static int fromChild(int score) {
+        return score > 0 ? -score + 1 : score < 0 ? -score - 1 : 0;
+    }
+
+    private int searchRoot(int depth, MoveList root) {
+        int alpha = -INFINITY;
+        int bestIndex = -1;
+        rootBest = NO_MOVE;
+        for (int i = 0; i < root.size(); i++) {
+            int move = root.get(i);
+            game.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+            } else {
+                score = -negamax(depth - 1, 1, -alpha - 1, -alpha);
+                if (score > alpha && !stopped) {
+                    score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+                }
+            }
+            game.unmakeMove();
+            if (stopped) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestIndex = i;
+                rootBest = move;
+            }
+        }
+        // the best move goes first next time, the others keep their order
+        for (int i = bestIndex; i > 0; i--) {
+            root.set(i, root.get(i - 1));
+        }
+        if (bestIndex > 0) {
+            root.set(0, rootBest);
+        }
+        return alpha;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (game.isFiftyMoveRule() || board.isInsufficientMaterial() || game.isRepeated(2)) {
+            return 0;
+        }
+        ChessGame.TeamColor us = game.getTeamTurn();
+        int solved = probe(us, ply);
+        if (solved != Tablebase.NOT_FOUND) {
+            return solved;
+        }
+        boolean inCheck = game.isInCheck(us);
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(board, us);
+        }
+        // no line from here can beat a mate already found nearer the root
+        alpha = Math.max(alpha, -MATE + ply);
+        beta = Math.min(beta, MATE - ply - 1);
+        if (alpha >= beta) {
+            return alpha;
+        }
+
+        long key = game.positionKey();
+        long entry = table.probe(key);
+        int hashMove = NO_MOVE;
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.move(entry);
+            // off the principal variation, a deep enough entry decides the
+            // node; on it the line is searched again so it stays whole
+            if (TranspositionTable.depth(entry) >= depth && beta - alpha == 1) {
+                int score = TranspositionTable.score(entry, ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList list = moves[ply];
+        list.clear();
+        game.validMoves(us, list);
+        if (list.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(list, ply, us, hashMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = NO_MOVE;
+        for (int i = 0; i < list.size(); i++) {
+            int move = pickNext(list, ply, i);
+            game.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    if (!PackedMove.hasFlags(move, PackedMove.CAPTURE)) {
+                        rememberCutoff(move, ply, depth, us);
+                    }
+                    table.store(key, move, TranspositionTable.toStored(alpha, ply), depth, TranspositionTable.LOWER);
+                    return alpha;
+                }
+            }
+        }
+        // below alpha every score is only a bound, so no move is known best
+        if (best > originalAlpha) {
+            table.store(key, bestMove, TranspositionTable.toStored(best, ply), depth, TranspositionTable.EXACT);
+        } else {
+            table.store(key, NO_MOVE, TranspositionTable.toStored(best, ply), depth, TranspositionTable.UPPER);
+        }
+        return best;
+    }
+
+    private int quiesce(int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        ChessGame.TeamColor us = game.getTeamTurn();
+        int solved = probe(us, ply);
+        if (solved != Tablebase.NOT_FOUND) {
+            return solved;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(board, us);
+        }
+        // out of check every move is searched; otherwise the side to move may
+        // stand pat rather than capture
+        boolean inCheck = game.isInCheck(us);
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = Evaluation.evaluate(board, us);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        MoveList list = moves[ply];
+        list.clear();
+        game.validMoves(us, list);
+        if (list.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(list, ply, us, NO_MOVE);
+
+        for (int i = 0; i < list.size(); i++) {
+            int move = pickNext(list, ply, i);
+            if (!inCheck && orderScores[ply][i] < CAPTURE_SCORE) {
+                break;
+            }
+            game.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    return alpha;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void rememberCutoff(int move, int ply, int depth, ChessGame.TeamColor us) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+        int[] fromHistory = history[us.ordinal()][PackedMove.from(move)];
+        int to = PackedMove.to(move);
+        fromHistory[to] += depth * depth;
+        if (fromHistory[to] >= HISTORY_LIMIT) {
+            for (int[][] side : history) {
+                for (int[] from : side) {
+                    for (int square = 0; square < 64; square++) {
+                        from[square] >>= 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives each move of the list an ordering score, kept alongside the list
+     * for {@link #pickNext}. The hash move, the best move stored for the
+     * position, goes before all others.
+     */
+    private void scoreMoves(MoveList list, int ply, ChessGame.TeamColor us, int hashMove) {
+        int[] scores = orderScores[ply];
+        if (scores.length < list.size()) {
+            scores = new int[list.size()];
+            orderScores[ply] = scores;
+        }
+        int[][] ourHistory = history[us.ordinal()];
+        for (int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            ChessPiece.PieceType promotion = PackedMove.promotion(move);
+            int score;
+            if (PackedMove.hasFlags(move, PackedMove.CAPTURE)) {
+                ChessPiece.PieceType victim = PackedMove.hasFlags(move, PackedMove.EN_PASSANT)
+                        ? ChessPiece.PieceType.PAWN : typeOn(to);
+                score = CAPTURE_SCORE + 16 * VICTIM_ORDER[victim.ordinal()] - VICTIM_ORDER[typeOn(from).ordinal()];
+            } else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = ourHistory[from][to];
+            }
+            if (promotion == ChessPiece.PieceType.QUEEN) {
+                score += CAPTURE_SCORE + 16 * VICTIM_ORDER[ChessPiece.PieceType.QUEEN.ordinal()];
+            } else if (promotion != null) {
+                score = -1;
+            }
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            }
+            scores[i] = score;
+        }
+    }
+
+    private ChessPiece.PieceType typeOn(int square) {
+        return board.getPiece(Bitboards.position(square)).getPieceType();
+    }
+
+    /**
+     * Moves the best scored of the moves from index on to index, so the list
+     * is only sorted as far as the search gets before a cutoff
+     */
+    private int pickNext(MoveList list, int ply, int index) {
+        int[] scores = orderScores[ply];
+        int best = index;
+        for (int i = index + 1; i < list.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            int move = list.get(best);
+            list.set(best, list.get(index));
+            list.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return list.get(index);
+    }
+
+    private void sortRoot(MoveList root, ChessGame.TeamColor us) {
+        long entry = table.probe(game.positionKey());
+        scoreMoves(root, 0, us, entry == TranspositionTable.MISS ? NO_MOVE : TranspositionTable.move(entry));
+        for (int i = 0; i < root.size(); i++) {
+            pickNext(root, 0, i);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Scores a position by material and by where each piece stands, using the
+ * piece-square tables of Tomasz Michniewski's "simplified evaluation function".
+ * The king has a middlegame table that keeps it behind its pawns and an endgame
+ * table that brings it to the center, used once the queens are gone or little
+ * else is left.
+ */
+public final class Evaluation {
+
+    // centipawns, in PieceType order: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    // Tables are written as the board is printed, row 8 first, from white's
+    // side; a white piece on square s uses entry s ^ 56 and a black piece uses
+    // entry s
+    private static final int[] PAWN = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] KING_MIDDLEGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // in PieceType order, with the king's middlegame table
+    private static final int[][] TABLES = {KING_MIDDLEGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN};
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Evaluation() {
+    }
+
+    /**
+     * @return the score of the position in centipawns from the point of view
+     * of the given team: positive when it stands better
+     */
+    public static int evaluate(ChessBoard board, ChessGame.TeamColor team) {
+        boolean endgame = isEndgame(board);
+        int score = 0;
+        for (ChessPiece.PieceType type : TYPES) {
+            int[] table = type == ChessPiece.PieceType.KING && endgame ? KING_ENDGAME : TABLES[type.ordinal()];
+            int value = PIECE_VALUES[type.ordinal()];
+            for (long pieces = board.getBitboard(ChessGame.TeamColor.WHITE, type); pieces != 0; pieces &= pieces - 1) {
+                score += value + table[Long.numberOfTrailingZeros(pieces) ^ 56];
+            }
+            for (long pieces = board.getBitboard(ChessGame.TeamColor.BLACK, type); pieces != 0; pieces &= pieces - 1) {
+                score -= value + table[Long.numberOfTrailingZeros(pieces)];
+            }
+        }
+        return team == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    /**
+     * @return true if both queens are gone, or no side has more than a queen
+     * and one minor piece besides its pawns
+     */
+    private static boolean isEndgame(ChessBoard board) {
+        long queens = board.getBitboard(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN)
+                | board.getBitboard(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN);
+        if (queens == 0) {
+            return true;
+        }
+        return minorAndMajorValue(board, ChessGame.TeamColor.WHITE) <= PIECE_VALUES[1] + PIECE_VALUES[2]
+                && minorAndMajorValue(board, ChessGame.TeamColor.BLACK) <= PIECE_VALUES[1] + PIECE_VALUES[2];
+    }
+
+    private static int minorAndMajorValue(ChessBoard board, ChessGame.TeamColor team) {
+        int value = 0;
+        for (int type = 1; type < 5; type++) {
+            value += PIECE_VALUES[type] * Long.bitCount(board.getBitboard(team, TYPES[type]));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,183 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Moves known to be good in well-known positions, read from a book file made
+ * by {@link BookBuilder}, so the computer player can answer them at once
+ * instead of searching.
+ * <p>
+ * The file is memory-mapped rather than read: it takes no heap however large
+ * it is, pages are only loaded when a lookup touches them, and every process
+ * that maps the same file shares one copy in the page cache. A lookup is a
+ * binary search of the sorted entries and allocates nothing beyond its
+ * result. Reads use absolute positions only, so one book can be shared by any
+ * number of threads.
+ * <p>
+ * Layout, all big-endian:
+ * <pre>
+ *  bytes  0-3   magic number "CBK1"
+ *  bytes  4-7   number n of entries
+ *  bytes  8-    n entries of 16 bytes, sorted by key, then by weight from
+ *               highest to lowest:
+ *                 bytes 0-7    Zobrist key of the position (see
+ *                              {@link ChessGame#positionKey})
+ *                 bytes 8-11   the move, packed without flags
+ *                 bytes 12-15  weight, how often the move was chosen
+ * </pre>
+ */
+public final class OpeningBook {
+
+    /**
+     * A move of the book with its weight
+     */
+    public record Entry(int move, int weight) {
+
+        public ChessMove chessMove() {
+            return PackedMove.toChessMove(move);
+        }
+    }
+
+    static final int MAGIC = 0x43424B31;
+    static final int HEADER_BYTES = 8;
+    static final int ENTRY_BYTES = 16;
+
+    private final ByteBuffer entries;
+    private final int size;
+
+    private OpeningBook(ByteBuffer entries, int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * Maps a book file. The file must not be changed while the book is in use.
+     *
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int size = buffer.getInt(4);
+            if (buffer.getInt(0) != MAGIC || size < 0 || (long) size * ENTRY_BYTES != length - HEADER_BYTES) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            return new OpeningBook(buffer, size);
+        }
+    }
+
+    /**
+     * @return the number of entries in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the book's legal moves in the game's position, most often chosen
+     * first, or an empty list if the position is not in the book
+     */
+    public List<Entry> lookup(ChessGame game) {
+        List<Entry> found = new ArrayList<>();
+        int first = firstEntry(game.positionKey());
+        if (first < 0) {
+            return found;
+        }
+        MoveList legal = new MoveList();
+        game.validMoves(game.getTeamTurn(), legal);
+        long key = game.positionKey();
+        for (int i = first; i < size && key(i) == key; i++) {
+            int move = legalMove(legal, move(i));
+            if (move != Engine.NO_MOVE) {
+                found.add(new Entry(move, weight(i)));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Picks one of the book's moves in the game's position, each with a chance
+     * in proportion to its weight
+     *
+     * @return the packed legal move, or {@link Engine#NO_MOVE} if the position
+     * is not in the book
+     */
+    public int choose(ChessGame game, RandomGenerator random) {
+        List<Entry> moves = lookup(game);
+        long total = 0;
+        for (Entry entry : moves) {
+            total += entry.weight();
+        }
+        if (total == 0) {
+            return Engine.NO_MOVE;
+        }
+        long pick = random.nextLong(total);
+        for (Entry entry : moves) {
+            pick -= entry.weight();
+            if (pick < 0) {
+                return entry.move();
+            }
+        }
+        return Engine.NO_MOVE;
+    }
+
+    /**
+     * @return the index of the first entry with the key, or -1 if there is none
+     */
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < size && key(low) == key ? low : -1;
+    }
+
+    /**
+     * @return the generated move matching a book move, which carries no flags,
+     * or NO_MOVE if it is not legal; a key shared by two positions may find
+     * moves of the other one
+     */
+    private static int legalMove(MoveList legal, int bookMove) {
+        for (int i = 0; i < legal.size(); i++) {
+            if (PackedMove.withoutFlags(legal.get(i)) == bookMove) {
+                return legal.get(i);
+            }
+        }
+        return Engine.NO_MOVE;
+    }
+
+    private long key(int index) {
+        return entries.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    private int move(int index) {
+        return entries.getInt(HEADER_BYTES + index * ENTRY_BYTES + 8);
+    }
+
+    private int weight(int index) {
+        return entries.getInt(HEADER_BYTES + index * ENTRY_BYTES + 12);
+    }
+}
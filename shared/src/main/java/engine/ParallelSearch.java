@@ -0,0 +1,144 @@
+package engine;
+
+import chess.ChessGame;
+import chess.GameCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Searches one position with several threads at once ("Lazy SMP").
+ * <p>
+ * The threads do not divide the work between them. Each runs an ordinary
+ * iterative deepening search of the whole position on its own copy of the
+ * game, and they meet only in the transposition table they share: what one
+ * thread stores, the others find, so together they fill the table faster
+ * than one thread could and the main search reaches each depth sooner. Half
+ * the helper threads start one depth ahead of the main search so they do not
+ * all walk the same tree in step.
+ * <p>
+ * The main search runs on the calling thread under the given limits and
+ * decides the result. When it stops, the helpers are told to stop and are
+ * waited for, so no helper is still running once {@link #search} returns.
+ * Helpers run on threads owned by the ParallelSearch, which
+ * {@link #close} ends. One ParallelSearch runs one search at a time.
+ */
+public final class ParallelSearch implements AutoCloseable {
+
+    private final TranspositionTable table;
+    private final Engine main;
+    private final Engine[] helpers;
+    private final ExecutorService pool;
+
+    /**
+     * @param threads threads to search with, counting the calling thread
+     * @param table   the table the threads share
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        this(threads, table, null);
+    }
+
+    /**
+     * @param threads   threads to search with, counting the calling thread
+     * @param table     the table the threads share
+     * @param tablebase perfect play in the endings it covers, or null
+     */
+    public ParallelSearch(int threads, TranspositionTable table, Tablebase tablebase) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A search needs at least one thread");
+        }
+        this.table = table;
+        main = new Engine(table, tablebase);
+        helpers = new Engine[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Engine(table, tablebase);
+        }
+        pool = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the number of threads a search uses, counting the calling thread
+     */
+    public int threads() {
+        return helpers.length + 1;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Searches for the best move of the team whose turn it is. The game is
+     * searched in place by the main search and left as it was found.
+     *
+     * @return the main search's result, with the nodes of all the threads
+     */
+    public synchronized SearchResult search(ChessGame game, SearchLimits limits) {
+        if (helpers.length == 0) {
+            return main.search(game, limits);
+        }
+        // only the main search watches the clock; helpers go on until it stops
+        SearchLimits helperLimits = SearchLimits.depth(limits.maxDepth());
+        AtomicBoolean stop = new AtomicBoolean();
+        byte[] encoded = GameCodec.encode(game);
+        table.newSearch();
+        List<Future<SearchResult>> running = new ArrayList<>(helpers.length);
+        for (int i = 0; i < helpers.length; i++) {
+            Engine helper = helpers[i];
+            int firstDepth = i % 2 == 0 ? 2 : 1;
+            ChessGame copy = GameCodec.decode(encoded);
+            running.add(pool.submit(() -> helper.search(copy, helperLimits, firstDepth, stop, false)));
+        }
+
+        SearchResult result;
+        try {
+            result = main.search(game, limits, 1, null, false);
+        } finally {
+            stop.set(true);
+        }
+        long nodes = result.nodes();
+        for (Future<SearchResult> helper : running) {
+            nodes += join(helper).nodes();
+        }
+        return new SearchResult(result.move(), result.score(), result.depth(), nodes, result.nanos());
+    }
+
+    private static SearchResult join(Future<SearchResult> helper) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return helper.get();
+                } catch (InterruptedException e) {
+                    // the helper stops within a few thousand nodes, so wait it out
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Ends the helper threads once any running search is done
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package engine;
+
+/**
+ * How far a search may go. The search stops at whichever limit it reaches
+ * first, and always has a move to give once the first depth is finished.
+ *
+ * @param maxDepth   deepest iteration to search, in plies
+ * @param maxNodes   positions to visit at most
+ * @param cpuMillis  processor time the searching thread may use; measured as
+ *                   wall time where the JVM cannot measure thread time
+ * @param wallMillis wall time the search may take, even if its thread is kept
+ *                   waiting for a processor
+ */
+public record SearchLimits(int maxDepth, long maxNodes, long cpuMillis, long wallMillis) {
+
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        if (maxDepth < 1 || maxNodes < 1 || cpuMillis < 1 || wallMillis < 1) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        maxDepth = Math.min(maxDepth, MAX_DEPTH);
+    }
+
+    /**
+     * @return limits of a search to a fixed depth, however long it takes
+     */
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return limits of a search that may visit a number of positions
+     */
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, nodes, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return limits of a search that may use the given processor time, and
+     * at most three times as much wall time
+     */
+    public static SearchLimits cpuTime(long millis) {
+        return new SearchLimits(MAX_DEPTH, Long.MAX_VALUE, millis, 3 * millis);
+    }
+}
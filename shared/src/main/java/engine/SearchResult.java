@@ -0,0 +1,25 @@
+package engine;
+
+import chess.ChessMove;
+import chess.PackedMove;
+
+/**
+ * The outcome of a search
+ *
+ * @param move  the packed best move, or {@link Engine#NO_MOVE} if the team to
+ *              move has no legal moves
+ * @param score score of the best move in centipawns for the team to move; see
+ *              {@link Engine#isMateScore}
+ * @param depth the deepest iteration that was finished
+ * @param nodes positions visited
+ * @param nanos wall time the search took
+ */
+public record SearchResult(int move, int score, int depth, long nodes, long nanos) {
+
+    /**
+     * @return the best move, or null if there is none
+     */
+    public ChessMove bestMove() {
+        return move == Engine.NO_MOVE ? null : PackedMove.toChessMove(move);
+    }
+}
@@ -0,0 +1,144 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Perfect play in the endings of a king and a queen, a rook, a pawn or a
+ * bishop and knight against a lone king, read from tables made by
+ * {@link TablebaseGenerator}: whether a position is won, and in how many
+ * moves mate can be forced against the best defence.
+ * <p>
+ * Like the {@link OpeningBook}, the tables are memory-mapped, so they take no
+ * heap, are loaded a page at a time as probes touch them and can be shared by
+ * any number of threads. A probe works out the position's number and reads one
+ * byte.
+ * <p>
+ * Layout of each file, one per ending, all big-endian:
+ * <pre>
+ *  bytes 0-3    magic number "CTB1"
+ *  bytes 4-7    number n of positions with a given side to move
+ *  bytes 8-     n bytes, the strong side to move: won in that many plies, or
+ *               0 for a draw
+ *  bytes 8+n-   n bytes, the weak side to move: lost in one less than that
+ *               many plies, or 0 for a draw
+ * </pre>
+ * Positions that cannot arise read as draws.
+ */
+public final class Tablebase {
+
+    /**
+     * The score of a position no table covers
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    static final int MAGIC = 0x43544231;
+    static final int HEADER_BYTES = 8;
+
+    private final Map<Endgame, ByteBuffer> tables;
+
+    private Tablebase(Map<Endgame, ByteBuffer> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maps the tables found in a directory; endings without a file are not
+     * covered. The files must not be changed while the tablebase is in use.
+     *
+     * @throws IOException if a file cannot be read or is not a table
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Map<Endgame, ByteBuffer> tables = new EnumMap<>(Endgame.class);
+        for (Endgame endgame : Endgame.values()) {
+            Path path = directory.resolve(endgame.fileName());
+            if (!Files.isRegularFile(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long length = channel.size();
+                if (length != HEADER_BYTES + 2L * endgame.size()) {
+                    throw new IOException("Not a tablebase: " + path);
+                }
+                // the mapping stays valid after the channel is closed
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != endgame.size()) {
+                    throw new IOException("Not a tablebase: " + path);
+                }
+                tables.put(endgame, buffer);
+            }
+        }
+        return new Tablebase(tables);
+    }
+
+    /**
+     * @return the number of endings covered
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * @return the score of the position for the side to move, as the
+     * {@link Engine} scores it: {@link Engine#MATE} - n for mate in n plies,
+     * minus that to be mated in n plies, 0 for a draw, or {@link #NOT_FOUND}
+     * if no table covers the position
+     */
+    public int probe(ChessGame game) {
+        return probe(game.getBoard(), game.getTeamTurn());
+    }
+
+    /**
+     * @return the score of the position for the side to move, as
+     * {@link #probe(ChessGame)}
+     */
+    public int probe(ChessBoard board, ChessGame.TeamColor toMove) {
+        // castling needs a rook and its king at home, which the tables leave out
+        if (Long.bitCount(board.getOccupancy()) > 4 || board.getCastlingRights() != 0) {
+            return NOT_FOUND;
+        }
+        long signature = board.getMaterialSignature();
+        Endgame endgame = Endgame.of(signature);
+        ByteBuffer table = endgame == null ? null : tables.get(endgame);
+        if (table == null) {
+            return NOT_FOUND;
+        }
+
+        ChessGame.TeamColor strong = endgame.isWhiteStrong(signature)
+                ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessGame.TeamColor weak = strong == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        int[] squares = new int[endgame.slots()];
+        squares[Endgame.STRONG_KING] = square(board, strong, ChessPiece.PieceType.KING);
+        squares[Endgame.WEAK_KING] = square(board, weak, ChessPiece.PieceType.KING);
+        ChessPiece.PieceType[] pieces = endgame.pieces();
+        for (int i = 0; i < pieces.length; i++) {
+            squares[Endgame.FIRST_PIECE + i] = square(board, strong, pieces[i]);
+        }
+        if (strong == ChessGame.TeamColor.BLACK) {
+            endgame.flipColors(squares);
+        }
+        endgame.canonicalize(squares);
+
+        int index = endgame.index(squares);
+        if (toMove == strong) {
+            int plies = table.get(HEADER_BYTES + index) & 0xFF;
+            return plies == 0 ? 0 : Engine.MATE - plies;
+        }
+        int stored = table.get(HEADER_BYTES + endgame.size() + index) & 0xFF;
+        return stored == 0 ? 0 : -(Engine.MATE - (stored - 1));
+    }
+
+    private static int square(ChessBoard board, ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return Long.numberOfTrailingZeros(board.getBitboard(color, type));
+    }
+}
@@ -0,0 +1,403 @@
+package engine;
+
+import chess.Attacks;
+import chess.ChessPiece;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Works out the tablebases by retrograde analysis: starting from the
+ * checkmates, every position is solved by stepping back one move at a time.
+ * <p>
+ * Each ending has two tables, one for each side to move, of one byte per
+ * position. A position of the strong side to move is won in n plies if one of
+ * its moves reaches a position lost in n - 1; the strong side's moves into a
+ * lost position are found by taking moves back ("unmoves") from it. A position
+ * of the weak side to move is lost in n plies if every move of its king reaches
+ * a position won in at most n - 1, and one in exactly n - 1. Whatever is left
+ * unsolved when no more positions are won or lost is a draw, as are positions
+ * where the weak king can take a piece safely, since none of these endings can
+ * be won after that. A pawn that promotes looks up the position reached in the
+ * queen or rook table, which is worked out first.
+ * <p>
+ * Every step runs over the positions in parallel. Each step only fills in
+ * positions that were unsolved before it, and any thread that fills one in
+ * writes the same value, so the tables come out the same whatever the number
+ * of threads or the order they run in.
+ * <p>
+ * Usage:
+ * <pre>
+ *  TablebaseGenerator [-threads n] &lt;directory&gt; [ending...]
+ * </pre>
+ * which writes the tables of the given endings, or of all of them, to the
+ * directory for {@link Tablebase#open}.
+ */
+public final class TablebaseGenerator {
+
+    // generation values of weak-side positions; stored ones are loss in n plies as n + 1
+    private static final byte UNSOLVED = (byte) 0xFF;
+    private static final byte DRAW = 0;
+
+    private final ForkJoinPool pool;
+    private final Map<Endgame, byte[][]> solved = new EnumMap<>(Endgame.class);
+
+    /**
+     * @param threads the number of threads to solve positions with
+     */
+    public TablebaseGenerator(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Writes the tables of the endings to the directory, working out first any
+     * table they promote into
+     *
+     * @param endings names of endings, e.g. "KQK", or none for all of them
+     */
+    public void generate(Path directory, String... endings) throws IOException {
+        List<Endgame> selected = new ArrayList<>();
+        if (endings.length == 0) {
+            selected.addAll(List.of(Endgame.values()));
+        } else {
+            for (String name : endings) {
+                try {
+                    selected.add(Endgame.valueOf(name.toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("No tablebase for the ending " + name);
+                }
+            }
+        }
+        Files.createDirectories(directory);
+        for (Endgame endgame : selected) {
+            write(endgame, solve(endgame), directory.resolve(endgame.fileName()));
+        }
+    }
+
+    /**
+     * @return the strong side's and the weak side's table of an ending
+     */
+    byte[][] solve(Endgame endgame) {
+        byte[][] tables = solved.get(endgame);
+        if (tables != null) {
+            return tables;
+        }
+        if (endgame == Endgame.KPK) {
+            solve(Endgame.KQK);
+            solve(Endgame.KRK);
+        }
+        tables = pool.submit(() -> new Solver(endgame).run()).join();
+        solved.put(endgame, tables);
+        return tables;
+    }
+
+    private static void write(Endgame endgame, byte[][] tables, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(endgame.size());
+            out.write(tables[0]);
+            out.write(tables[1]);
+        }
+    }
+
+    /**
+     * Works out the tables of one ending
+     */
+    private final class Solver {
+
+        private final Endgame endgame;
+        private final ChessPiece.PieceType[] pieces;
+        private final int slots;
+        // strong side to move: won in n plies, or 0
+        private final byte[] strong;
+        // weak side to move: UNSOLVED during generation, then lost in n plies as n + 1, or DRAW
+        private final byte[] weak;
+        // strong side to move: won in n plies by promoting, or 0
+        private final byte[] promotions;
+
+        Solver(Endgame endgame) {
+            this.endgame = endgame;
+            pieces = endgame.pieces();
+            slots = endgame.slots();
+            strong = new byte[endgame.size()];
+            weak = new byte[endgame.size()];
+            promotions = endgame == Endgame.KPK ? new byte[endgame.size()] : null;
+        }
+
+        byte[][] run() {
+            IntStream.range(0, endgame.size()).parallel().forEach(this::initialize);
+            int maxPromotion = 0;
+            if (promotions != null) {
+                maxPromotion = IntStream.range(0, endgame.size()).parallel().map(this::promote).max().orElse(0);
+            }
+
+            // weak positions lost in plies, then strong positions won in plies + 1
+            for (int plies = 0; ; plies += 2) {
+                int won = plies + 1;
+                int wins = IntStream.range(0, endgame.size()).parallel().map(index -> unmove(index, won)).sum();
+                if (promotions != null) {
+                    wins += IntStream.range(0, endgame.size()).parallel().map(index -> {
+                        if (promotions[index] == won && strong[index] == 0) {
+                            strong[index] = (byte) won;
+                            return 1;
+                        }
+                        return 0;
+                    }).sum();
+                }
+                int losses = IntStream.range(0, endgame.size()).parallel()
+                        .map(index -> loseIfAllWon(index, won)).sum();
+                if (wins == 0 && losses == 0 && won >= maxPromotion) {
+                    break;
+                }
+            }
+
+            for (int index = 0; index < weak.length; index++) {
+                if (weak[index] == UNSOLVED) {
+                    weak[index] = DRAW;
+                }
+            }
+            return new byte[][]{strong, weak};
+        }
+
+        /**
+         * Marks the weak side's positions that are already decided: illegal
+         * ones, checkmate, stalemate and those where a piece can be taken
+         */
+        private void initialize(int index) {
+            int[] squares = new int[slots];
+            endgame.decode(index, squares);
+            if (!isValid(squares, false)) {
+                weak[index] = DRAW;
+                return;
+            }
+            long occupied = occupied(squares);
+            int weakKing = squares[Endgame.WEAK_KING];
+            long kingless = occupied & ~bit(weakKing);
+            boolean canMove = false;
+            for (long targets = Attacks.king(weakKing) & ~Attacks.king(squares[Endgame.STRONG_KING]);
+                 targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                int taken = pieceOn(squares, to);
+                if (!isAttacked(squares, to, kingless, taken)) {
+                    if (taken >= 0) {
+                        weak[index] = DRAW;
+                        return;
+                    }
+                    canMove = true;
+                }
+            }
+            if (canMove) {
+                weak[index] = UNSOLVED;
+            } else {
+                // checkmate, lost in 0 plies, or stalemate
+                weak[index] = isAttacked(squares, weakKing, occupied, -1) ? 1 : DRAW;
+            }
+        }
+
+        /**
+         * Works out how soon the strong side wins by promoting its pawn
+         *
+         * @return the plies to mate by promotion, or 0
+         */
+        private int promote(int index) {
+            int[] squares = new int[slots];
+            endgame.decode(index, squares);
+            int pawn = squares[Endgame.FIRST_PIECE];
+            if (pawn >>> 3 != 6 || !isValid(squares, true) || (occupied(squares) & bit(pawn + 8)) != 0) {
+                return 0;
+            }
+            int best = 0;
+            for (Endgame promoted : new Endgame[]{Endgame.KQK, Endgame.KRK}) {
+                int[] after = {squares[Endgame.STRONG_KING], squares[Endgame.WEAK_KING], pawn + 8};
+                promoted.canonicalize(after);
+                int value = solved.get(promoted)[1][promoted.index(after)];
+                // lost in value - 1 plies for the weak side
+                if (value > 0 && (best == 0 || value < best)) {
+                    best = value;
+                }
+            }
+            promotions[index] = (byte) best;
+            return best;
+        }
+
+        /**
+         * Takes back each move of the strong side into a weak position lost in
+         * won - 1 plies, marking the positions before as won in won plies
+         *
+         * @return the number of positions marked
+         */
+        private int unmove(int index, int won) {
+            // lost in won - 1 plies is stored as won
+            if (weak[index] != won) {
+                return 0;
+            }
+            int[] squares = new int[slots];
+            int[] before = new int[slots];
+            endgame.decode(index, squares);
+            long occupied = occupied(squares);
+            int marked = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                if (slot == Endgame.WEAK_KING) {
+                    continue;
+                }
+                int square = squares[slot];
+                long from;
+                ChessPiece.PieceType type = type(slot);
+                if (type == ChessPiece.PieceType.PAWN) {
+                    from = 0;
+                    if (square >>> 3 >= 2 && (occupied & bit(square - 8)) == 0) {
+                        from |= bit(square - 8);
+                        if (square >>> 3 == 3 && (occupied & bit(square - 16)) == 0) {
+                            from |= bit(square - 16);
+                        }
+                    }
+                } else {
+                    from = Endgame.attacks(type, square, occupied) & ~occupied;
+                }
+                for (; from != 0; from &= from - 1) {
+                    System.arraycopy(squares, 0, before, 0, slots);
+                    before[slot] = Long.numberOfTrailingZeros(from);
+                    endgame.canonicalize(before);
+                    if (!isValid(before, true)) {
+                        continue;
+                    }
+                    int previous = endgame.index(before);
+                    if (strong[previous] == 0) {
+                        strong[previous] = (byte) won;
+                        marked++;
+                    }
+                }
+            }
+            return marked;
+        }
+
+        /**
+         * Marks an unsolved weak position as lost once every king move reaches
+         * a won position; the last of them was won in won plies
+         *
+         * @return 1 if the position was marked
+         */
+        private int loseIfAllWon(int index, int won) {
+            if (weak[index] != UNSOLVED) {
+                return 0;
+            }
+            int[] squares = new int[slots];
+            endgame.decode(index, squares);
+            int weakKing = squares[Endgame.WEAK_KING];
+            long kingless = occupied(squares) & ~bit(weakKing);
+            for (long targets = Attacks.king(weakKing) & ~Attacks.king(squares[Endgame.STRONG_KING]);
+                 targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if ((kingless & bit(to)) != 0 || isAttacked(squares, to, kingless, -1)) {
+                    // pieces that could be taken were dealt with at the start
+                    continue;
+                }
+                squares[Endgame.WEAK_KING] = to;
+                int[] after = squares.clone();
+                squares[Endgame.WEAK_KING] = weakKing;
+                endgame.canonicalize(after);
+                if (strong[endgame.index(after)] == 0) {
+                    return 0;
+                }
+            }
+            // lost in won + 1 plies, stored as won + 2
+            weak[index] = (byte) (won + 2);
+            return 1;
+        }
+
+        /**
+         * @return true if the squares are a legal position in canonical form
+         * with the given side to move
+         */
+        private boolean isValid(int[] squares, boolean strongToMove) {
+            long occupied = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                occupied |= bit(squares[slot]);
+            }
+            if (Long.bitCount(occupied) != slots
+                    || (Attacks.king(squares[Endgame.STRONG_KING]) & bit(squares[Endgame.WEAK_KING])) != 0) {
+                return false;
+            }
+            int[] canonical = squares.clone();
+            endgame.canonicalize(canonical);
+            if (!Arrays.equals(canonical, squares)) {
+                return false;
+            }
+            // the side that just moved cannot be in check
+            return !strongToMove || !isAttacked(squares, squares[Endgame.WEAK_KING], occupied, -1);
+        }
+
+        /**
+         * @return true if a strong piece other than the one in the skipped
+         * slot attacks the square
+         */
+        private boolean isAttacked(int[] squares, int square, long occupied, int skipSlot) {
+            for (int slot = 0; slot < slots; slot++) {
+                if (slot != Endgame.WEAK_KING && slot != skipSlot
+                        && (Endgame.attacks(type(slot), squares[slot], occupied) & bit(square)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private ChessPiece.PieceType type(int slot) {
+            return slot == Endgame.STRONG_KING ? ChessPiece.PieceType.KING : pieces[slot - Endgame.FIRST_PIECE];
+        }
+
+        /**
+         * @return the slot of the strong piece on the square, or -1
+         */
+        private int pieceOn(int[] squares, int square) {
+            for (int slot = Endgame.FIRST_PIECE; slot < slots; slot++) {
+                if (squares[slot] == square) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private long occupied(int[] squares) {
+            long occupied = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                occupied |= bit(squares[slot]);
+            }
+            return occupied;
+        }
+    }
+
+    private static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int next = 0;
+        if (args.length > 1 && args[0].equals("-threads")) {
+            threads = Integer.parseInt(args[1]);
+            next = 2;
+        }
+        if (args.length <= next) {
+            System.out.println("""
+                    Usage:
+                      TablebaseGenerator [-threads n] <directory> [ending...]
+                    Endings: KQK, KRK, KPK, KBNK; all of them if none are given""");
+            return;
+        }
+        Path directory = Path.of(args[next]);
+        String[] endings = List.of(args).subList(next + 1, args.length).toArray(new String[0]);
+        long start = System.nanoTime();
+        new TablebaseGenerator(threads).generate(directory, endings);
+        System.out.printf("Tablebases written to %s in %.1f s%n", directory, (System.nanoTime() - start) / 1e9);
+    }
+}
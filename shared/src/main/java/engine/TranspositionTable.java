@@ -0,0 +1,258 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers what searches found about positions they have already visited:
+ * the best move, the score and how deep it was searched. The same position is
+ * reached by many move orders, so a search that finds it here can skip it or
+ * at least try its best move first.
+ * <p>
+ * The table is one preallocated {@code long[]} sized by a memory budget and
+ * never grows, however many searches use it. It is shared by searching
+ * threads without locks: each entry is two longs, the data and the position's
+ * Zobrist key XORed with the data. A thread that reads an entry while another
+ * writes it sees a key and data that do not belong together, and since the
+ * key no longer checks out the entry simply misses. Entries are grouped in
+ * buckets of four, 64 bytes, which usually sit on one cache line (Java does
+ * not align arrays to lines, so some span two); a position may take any entry
+ * of its bucket, replacing the one left by the oldest and shallowest search.
+ * <p>
+ * Entry data, from the least significant bit:
+ * <pre>
+ *  bits  0-18  best move (see {@link chess.PackedMove}), or Engine.NO_MOVE
+ *  bits 19-34  score, offset to be unsigned
+ *  bits 35-42  depth searched
+ *  bits 43-44  bound: UPPER, LOWER or EXACT, never 0
+ *  bits 45-52  generation of the search that stored it
+ * </pre>
+ */
+public final class TranspositionTable {
+
+    /**
+     * The score is at most the stored one: no move beat alpha
+     */
+    public static final int UPPER = 1;
+    /**
+     * The score is at least the stored one: a move reached beta
+     */
+    public static final int LOWER = 2;
+    /**
+     * The score is exact
+     */
+    public static final int EXACT = 3;
+
+    /**
+     * The data of {@link #probe} when the position is not in the table
+     */
+    public static final long MISS = 0;
+
+    public static final int MIN_MEGABYTES = 1;
+    public static final int MAX_MEGABYTES = 8192;
+
+    private static final int ENTRIES_PER_BUCKET = 4;
+    // two longs per entry
+    private static final int BUCKET_LONGS = 2 * ENTRIES_PER_BUCKET;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+
+    private static final int MOVE_BITS = 19;
+    private static final int SCORE_SHIFT = 19;
+    private static final int DEPTH_SHIFT = 35;
+    private static final int BOUND_SHIFT = 43;
+    private static final int GENERATION_SHIFT = 45;
+    private static final int SCORE_OFFSET = 1 << 15;
+    private static final int MAX_DEPTH = 255;
+
+    private final long[] entries;
+    private final int bucketMask;
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * @param megabytes memory the table may use, from {@link #MIN_MEGABYTES}
+     *                  to {@link #MAX_MEGABYTES}; rounded down to a power of
+     *                  two
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < MIN_MEGABYTES || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException("Transposition table size must be from " + MIN_MEGABYTES + " to "
+                    + MAX_MEGABYTES + " megabytes");
+        }
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BUCKET_BYTES);
+        entries = new long[(int) (buckets * BUCKET_LONGS)];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Starts a new generation, so entries stored before now give way to the
+     * new search's entries when a bucket is full. Called once per search.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table and its statistics
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     * @return the data stored for the position, or {@link #MISS}
+     */
+    public long probe(long key) {
+        probes.increment();
+        int bucket = bucketIndex(key);
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += 2) {
+            long data = entries[i + 1];
+            if (data != MISS && (entries[i] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores what a search found about a position, replacing any earlier entry
+     * for it
+     *
+     * @param move  the best move, or Engine.NO_MOVE to keep a move already
+     *              stored for the position
+     * @param score score relative to the position, with mate scores counted
+     *              from it rather than from the root (see {@link #toStored})
+     * @param depth the depth searched, in plies
+     * @param bound {@link #UPPER}, {@link #LOWER} or {@link #EXACT}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        stores.increment();
+        int bucket = bucketIndex(key);
+        int current = generation;
+        int replace = bucket;
+        int replaceWorth = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += 2) {
+            long data = entries[i + 1];
+            if (data == MISS) {
+                replace = i;
+                break;
+            }
+            if ((entries[i] ^ data) == key) {
+                if (move == Engine.NO_MOVE) {
+                    move = move(data);
+                }
+                replace = i;
+                break;
+            }
+            // each generation of age counts as much as eight plies of depth
+            int worth = depth(data) - 8 * ((current - generation(data)) & 0xFF);
+            if (worth < replaceWorth) {
+                replaceWorth = worth;
+                replace = i;
+            }
+        }
+        long data = (move & ((1L << MOVE_BITS) - 1))
+                | (long) (score + SCORE_OFFSET) << SCORE_SHIFT
+                | (long) Math.min(Math.max(depth, 0), MAX_DEPTH) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) current << GENERATION_SHIFT;
+        entries[replace] = key ^ data;
+        entries[replace + 1] = data;
+    }
+
+    public static int move(long data) {
+        return (int) data & ((1 << MOVE_BITS) - 1);
+    }
+
+    /**
+     * @return the stored score, with mate scores counted from the root of a
+     * search that found the position at the given ply
+     */
+    public static int score(long data, int ply) {
+        int score = (int) (data >>> SCORE_SHIFT & 0xFFFF) - SCORE_OFFSET;
+        if (Engine.isMateScore(score)) {
+            return score > 0 ? score - ply : score + ply;
+        }
+        return score;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT & 3);
+    }
+
+    /**
+     * @return a score found at the given ply, with mate scores counted from
+     * that ply rather than from the root, so it holds wherever the position is
+     * found again
+     */
+    public static int toStored(int score, int ply) {
+        if (Engine.isMateScore(score)) {
+            return score > 0 ? score + ply : score - ply;
+        }
+        return score;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT & 0xFF);
+    }
+
+    private int bucketIndex(long key) {
+        // the low bits of a Zobrist key are as random as the high ones
+        return ((int) key & bucketMask) * BUCKET_LONGS;
+    }
+
+    /**
+     * @return the number of entries the table holds
+     */
+    public int capacity() {
+        return entries.length / 2;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return the fraction of probes that found their position, from 0 to 1
+     */
+    public double hitRate() {
+        long probed = probes.sum();
+        return probed == 0 ? 0 : (double) hits.sum() / probed;
+    }
+
+    /**
+     * @return how full the table is with entries of the current search, in
+     * thousandths, judged from a sample of the first entries
+     */
+    public int usagePerMille() {
+        int sample = Math.min(1000, capacity());
+        int current = generation;
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = entries[2 * i + 1];
+            if (data != MISS && generation(data) == current) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+}
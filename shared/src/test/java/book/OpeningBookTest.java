@@ -0,0 +1,108 @@
+package book;
+
+import chess.*;
+import engine.BookBuilder;
+import engine.Engine;
+import engine.OpeningBook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+public class OpeningBookTest {
+
+    private static final String GAMES = """
+            [Result "1-0"]
+            1. e4 e5 2. Nf3 Nc6 1-0
+            [Result "1-0"]
+            1. e4 c5 2. Nf3 d6 1-0
+            [Result "1/2-1/2"]
+            1. d4 d5 1/2-1/2
+            [Result "0-1"]
+            1. d4 Nf6 0-1
+            [Result "0-1"]
+            1. c4 e5 0-1
+            [Result "1-0"]
+            1. e4 e5 2. Bc4 1-0
+            """;
+
+    @TempDir
+    Path directory;
+
+    private OpeningBook build(int minGames) throws IOException {
+        Path pgn = directory.resolve("games.pgn");
+        Files.writeString(pgn, GAMES);
+        BookBuilder builder = new BookBuilder(3, minGames);
+        builder.addAll(pgn);
+        Assertions.assertEquals(6, builder.games());
+        Path book = directory.resolve("games.book");
+        int entries = builder.write(book);
+        OpeningBook opened = OpeningBook.open(book);
+        Assertions.assertEquals(entries, opened.size());
+        return opened;
+    }
+
+    @Test
+    public void weighsMovesByResult() throws IOException {
+        OpeningBook book = build(1);
+        ChessGame game = new ChessGame();
+        // e4 won three games, d4 drew one and lost one, c4 lost
+        Assertions.assertEquals(List.of(entry(game, "e4", 6), entry(game, "d4", 1)), book.lookup(game));
+
+        game.makeMove(San.parse(game, "e4"));
+        // black's e5 and c5 only lost
+        Assertions.assertEquals(List.of(), book.lookup(game));
+
+        game.makeMove(San.parse(game, "e5"));
+        List<OpeningBook.Entry> replies = book.lookup(game);
+        Assertions.assertEquals(2, replies.size());
+        Assertions.assertEquals(2, replies.get(0).weight());
+        Assertions.assertEquals(Engine.NO_MOVE, book.choose(Fen.parse("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), new Random(1)));
+    }
+
+    @Test
+    public void choosesByWeight() throws IOException {
+        OpeningBook book = build(1);
+        ChessGame game = new ChessGame();
+        int e4 = San.parse(game, "e4");
+        int d4 = San.parse(game, "d4");
+        Random random = new Random(7);
+        int e4Count = 0;
+        for (int i = 0; i < 7000; i++) {
+            int move = book.choose(game, random);
+            Assertions.assertTrue(move == e4 || move == d4);
+            if (move == e4) {
+                e4Count++;
+            }
+        }
+        Assertions.assertTrue(e4Count > 5700 && e4Count < 6300, "e4 chosen " + e4Count);
+    }
+
+    @Test
+    public void leavesOutRareMoves() throws IOException {
+        OpeningBook book = build(2);
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(List.of(entry(game, "e4", 6), entry(game, "d4", 1)), book.lookup(game));
+        game.makeMove(San.parse(game, "e4"));
+        game.makeMove(San.parse(game, "e5"));
+        Assertions.assertEquals(List.of(), book.lookup(game));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other");
+        Files.write(file, new byte[]{1, 2, 3, 4, 0, 0, 0, 0});
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(file));
+        Files.write(file, new byte[]{0x43, 0x42, 0x4B, 0x31, 0, 0, 0, 1});
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(file));
+    }
+
+    private static OpeningBook.Entry entry(ChessGame game, String san, int weight) {
+        return new OpeningBook.Entry(San.parse(game, san), weight);
+    }
+}
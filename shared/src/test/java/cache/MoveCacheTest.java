@@ -0,0 +1,52 @@
+package cache;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+public class MoveCacheTest {
+
+    @Test
+    public void repeatedQueriesHitCache() {
+        ChessGame game = new ChessGame();
+        game.validMoves(new ChessPosition(2, 5));
+        Assertions.assertEquals(0, game.getMoveCacheHits());
+        Assertions.assertEquals(1, game.getMoveCacheMisses());
+
+        game.validMoves(new ChessPosition(1, 7));
+        game.validMoves(new ChessPosition(2, 5));
+        game.getStatus();
+        Assertions.assertEquals(3, game.getMoveCacheHits());
+        Assertions.assertEquals(1, game.getMoveCacheMisses());
+    }
+
+    @Test
+    public void statusChecksDoNotCountMisses() {
+        ChessGame game = new ChessGame();
+        game.getStatus();
+        game.isInCheckmate(ChessGame.TeamColor.BLACK);
+        Assertions.assertEquals(0, game.getMoveCacheMisses());
+
+        game.validMoves(new ChessPosition(2, 5));
+        Assertions.assertEquals(1, game.getMoveCacheMisses());
+    }
+
+    @Test
+    public void editedBoardIsNotServedStaleMoves() {
+        ChessGame game = new ChessGame();
+        ChessPosition rook = new ChessPosition(1, 1);
+        Assertions.assertTrue(game.validMoves(rook).isEmpty());
+
+        game.getBoard().addPiece(new ChessPosition(2, 1), null);
+        Collection<ChessMove> moves = game.validMoves(rook);
+        Assertions.assertEquals(6, moves.size());
+
+        ChessBoard empty = new ChessBoard();
+        empty.addPiece(rook, new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        game.setBoard(empty);
+        Assertions.assertEquals(14, new HashSet<>(game.validMoves(rook)).size());
+    }
+}
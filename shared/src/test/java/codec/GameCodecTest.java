@@ -0,0 +1,97 @@
+package codec;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class GameCodecTest {
+
+    @Test
+    public void fenRoundTrip() {
+        for (Perft.Position position : Perft.STANDARD) {
+            String[] fields = position.fen().split(" ");
+            String[] written = Fen.format(Fen.parse(position.fen())).split(" ");
+            Assertions.assertArrayEquals(Arrays.copyOf(fields, 5), Arrays.copyOf(written, 5), position.name());
+        }
+        String enPassant = "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3";
+        Assertions.assertEquals(enPassant.replace(" 0 3", " 0 1"), Fen.format(Fen.parse(enPassant)));
+    }
+
+    @Test
+    public void badFenIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse("8/8/8 w - -"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse(Fen.START.replace(" w ", " x ")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.parse("4k3/8/8/8/8/8/8/4K3 w K - 0 1"));
+    }
+
+    @Test
+    public void binaryRoundTrip() {
+        ChessGame game = new ChessGame();
+        Random random = new Random(240);
+        MoveList moves = new MoveList();
+        for (int ply = 0; ply < 300; ply++) {
+            assertSameGame(game, GameCodec.decode(GameCodec.encode(game)));
+            assertSameGame(game, Fen.parse(Fen.format(game)));
+
+            moves.clear();
+            game.validMoves(game.getTeamTurn(), moves);
+            if (moves.isEmpty()) {
+                game = new ChessGame();
+                continue;
+            }
+            game.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void binaryKeepsGameOver() {
+        ChessGame game = new ChessGame();
+        game.setGameOver(true);
+        game.setWinner(ChessGame.TeamColor.BLACK);
+        byte[] bytes = GameCodec.encode(game);
+        Assertions.assertEquals(GameCodec.MIN_SIZE, bytes.length);
+
+        ChessGame decoded = GameCodec.decode(bytes);
+        Assertions.assertTrue(decoded.isGameOver());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, decoded.getWinner());
+
+        bytes[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(bytes));
+
+        byte[] badEnPassant = GameCodec.encode(new ChessGame());
+        badEnPassant[26] = 3;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(badEnPassant));
+    }
+
+    @Test
+    public void binaryKeepsRepetitionHistory() {
+        ChessGame game = new ChessGame();
+        int[] shuffle = {
+                PackedMove.encode(6, 21, PackedMove.NONE), PackedMove.encode(62, 45, PackedMove.NONE),
+                PackedMove.encode(21, 6, PackedMove.NONE), PackedMove.encode(45, 62, PackedMove.NONE)
+        };
+        for (int ply = 0; ply < 7; ply++) {
+            game.makeMove(shuffle[ply % 4]);
+        }
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertEquals(7, decoded.getHalfmoveClock());
+        decoded.makeMove(shuffle[3]);
+        Assertions.assertTrue(decoded.isThreefoldRepetition());
+
+        byte[] version1 = Arrays.copyOf(GameCodec.encode(new ChessGame()), 27);
+        version1[0] = 1;
+        Assertions.assertEquals(new ChessGame().getBoard(), GameCodec.decode(version1).getBoard());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(Arrays.copyOf(version1, 20)));
+    }
+
+    private static void assertSameGame(ChessGame expected, ChessGame actual) {
+        Assertions.assertEquals(expected.getBoard(), actual.getBoard());
+        Assertions.assertEquals(expected.getTeamTurn(), actual.getTeamTurn());
+        Assertions.assertEquals(expected.positionKey(), actual.positionKey());
+        Assertions.assertEquals(expected.getBoard().getCastlingRights(), actual.getBoard().getCastlingRights());
+        Assertions.assertEquals(expected.getHalfmoveClock(), actual.getHalfmoveClock());
+    }
+}
@@ -0,0 +1,54 @@
+package engine;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EngineTest {
+
+    @Test
+    public void findsMate() {
+        Engine engine = new Engine();
+        SearchResult backRank = engine.search(Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), SearchLimits.depth(4));
+        Assertions.assertEquals("a1a8", Perft.toCoordinates(backRank.bestMove()));
+        Assertions.assertEquals(Engine.MATE - 1, backRank.score());
+
+        SearchResult mateInThree = engine.search(Fen.parse("2r3k1/p4p2/3Rp2p/1p2P1pK/8/1P4P1/P3Q2P/1q6 b - - 0 1"),
+                SearchLimits.depth(6));
+        Assertions.assertTrue(Engine.isMateScore(mateInThree.score()));
+        Assertions.assertEquals(Engine.MATE - 5, mateInThree.score());
+    }
+
+    @Test
+    public void takesHangingQueen() {
+        SearchResult result = new Engine().search(Fen.parse("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1"), SearchLimits.depth(3));
+        Assertions.assertEquals("d1d5", Perft.toCoordinates(result.bestMove()));
+    }
+
+    @Test
+    public void noMoveWhenMated() {
+        SearchResult result = new Engine().search(Fen.parse("r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4"),
+                SearchLimits.depth(3));
+        Assertions.assertNull(result.bestMove());
+        Assertions.assertEquals(-Engine.MATE, result.score());
+    }
+
+    @Test
+    public void stopsAtLimitsAndRestoresGame() {
+        ChessGame game = Fen.parse(Perft.STANDARD.get(1).fen());
+        String fen = Fen.format(game);
+        long key = game.positionKey();
+
+        SearchResult byNodes = new Engine().search(game, SearchLimits.nodes(20_000));
+        Assertions.assertNotNull(byNodes.bestMove());
+        Assertions.assertTrue(byNodes.nodes() < 20_000 + 2048, "nodes " + byNodes.nodes());
+        Assertions.assertTrue(game.isLegal(byNodes.bestMove()));
+
+        SearchResult byTime = new Engine().search(game, SearchLimits.cpuTime(50));
+        Assertions.assertNotNull(byTime.bestMove());
+        Assertions.assertTrue(byTime.nanos() < 1_000_000_000L, "nanos " + byTime.nanos());
+
+        Assertions.assertEquals(fen, Fen.format(game));
+        Assertions.assertEquals(key, game.positionKey());
+    }
+}
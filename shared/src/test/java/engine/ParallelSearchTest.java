@@ -0,0 +1,42 @@
+package engine;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ParallelSearchTest {
+
+    @Test
+    public void findsMate() {
+        try (ParallelSearch search = new ParallelSearch(3, new TranspositionTable(4))) {
+            SearchResult result = search.search(Fen.parse("2r3k1/p4p2/3Rp2p/1p2P1pK/8/1P4P1/P3Q2P/1q6 b - - 0 1"),
+                    SearchLimits.depth(6));
+            Assertions.assertEquals(Engine.MATE - 5, result.score());
+        }
+    }
+
+    @Test
+    public void stopsHelpersAndRestoresGame() {
+        ChessGame game = Fen.parse(Perft.STANDARD.get(1).fen());
+        String fen = Fen.format(game);
+        try (ParallelSearch search = new ParallelSearch(4, new TranspositionTable(4))) {
+            for (int i = 0; i < 3; i++) {
+                SearchResult result = search.search(game, SearchLimits.cpuTime(30));
+                Assertions.assertTrue(game.isLegal(result.bestMove()));
+                Assertions.assertTrue(result.nanos() < 1_000_000_000L, "nanos " + result.nanos());
+                Assertions.assertEquals(fen, Fen.format(game));
+            }
+        }
+    }
+
+    @Test
+    public void oneThreadIsPlainSearch() {
+        ChessGame game = Fen.parse(Perft.STANDARD.get(2).fen());
+        SearchResult plain = new Engine(new TranspositionTable(4)).search(game, SearchLimits.depth(4));
+        try (ParallelSearch search = new ParallelSearch(1, new TranspositionTable(4))) {
+            SearchResult parallel = search.search(game, SearchLimits.depth(4));
+            Assertions.assertEquals(plain, new SearchResult(parallel.move(), parallel.score(), parallel.depth(),
+                    parallel.nodes(), plain.nanos()));
+        }
+    }
+}
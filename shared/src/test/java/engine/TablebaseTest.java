@@ -0,0 +1,184 @@
+package engine;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TablebaseTest {
+
+    @TempDir
+    static Path directory;
+
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    public static void generate() throws IOException {
+        new TablebaseGenerator(2).generate(directory, "KQK", "KRK", "KPK");
+        tablebase = Tablebase.open(directory);
+        Assertions.assertEquals(3, tablebase.size());
+    }
+
+    @Test
+    public void longestWins() throws IOException {
+        // mate in 10, 16 and 28 moves at most
+        Assertions.assertEquals(19, longestWin(Endgame.KQK));
+        Assertions.assertEquals(31, longestWin(Endgame.KRK));
+        Assertions.assertEquals(55, longestWin(Endgame.KPK));
+    }
+
+    @Test
+    public void knownPositions() {
+        Assertions.assertEquals(Engine.MATE - 1, tablebase.probe(Fen.parse("6k1/8/6K1/8/8/8/8/R7 w - - 0 1")));
+        Assertions.assertEquals(-Engine.MATE, tablebase.probe(Fen.parse("R5k1/8/6K1/8/8/8/8/8 b - - 0 1")));
+        Assertions.assertEquals(0, tablebase.probe(Fen.parse("7k/8/6QK/8/8/8/8/8 b - - 0 1")));
+        // the weak king takes the undefended rook
+        Assertions.assertEquals(0, tablebase.probe(Fen.parse("8/8/8/8/8/8/1r6/K6k w - - 0 1")));
+
+        Assertions.assertTrue(tablebase.probe(Fen.parse("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1")) > 0);
+        Assertions.assertEquals(0, tablebase.probe(Fen.parse("8/8/8/8/8/4k3/4P3/4K3 w - - 0 1")));
+        Assertions.assertEquals(0, tablebase.probe(Fen.parse("k7/8/8/8/8/8/P7/K7 w - - 0 1")));
+        // the same with black strong
+        Assertions.assertTrue(tablebase.probe(Fen.parse("8/8/8/8/4p3/4k3/8/4K3 b - - 0 1")) > 0);
+        Assertions.assertTrue(tablebase.probe(Fen.parse("8/8/8/8/4p3/4k3/8/4K3 w - - 0 1")) < 0);
+
+        Assertions.assertEquals(Tablebase.NOT_FOUND, tablebase.probe(Fen.parse("4k3/8/8/8/8/8/8/RR2K3 w - - 0 1")));
+        Assertions.assertEquals(Tablebase.NOT_FOUND, tablebase.probe(Fen.parse("4k3/8/8/8/8/8/8/4K2R w K - 0 1")));
+    }
+
+    @Test
+    public void agreesWithMoves() {
+        Random random = new Random(11);
+        String pieces = "QRP";
+        int checked = 0;
+        while (checked < 3000) {
+            char piece = pieces.charAt(random.nextInt(pieces.length()));
+            ChessGame game = randomPosition(random, piece);
+            if (game == null) {
+                continue;
+            }
+            Assertions.assertEquals(bestChild(game), tablebase.probe(game), Fen.format(game));
+            checked++;
+        }
+    }
+
+    @Test
+    public void sameTablesWithAnyThreads() throws IOException {
+        Path one = directory.resolve("one");
+        Path three = directory.resolve("three");
+        new TablebaseGenerator(1).generate(one, "KPK");
+        new TablebaseGenerator(3).generate(three, "KPK");
+        Assertions.assertArrayEquals(Files.readAllBytes(one.resolve("kpk.tb")),
+                Files.readAllBytes(three.resolve("kpk.tb")));
+        Assertions.assertArrayEquals(Files.readAllBytes(one.resolve("kpk.tb")),
+                Files.readAllBytes(directory.resolve("kpk.tb")));
+    }
+
+    @Test
+    public void enginePlaysShortestMate() {
+        ChessGame game = Fen.parse("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+        int expected = Engine.MATE - tablebase.probe(game);
+        Engine engine = new Engine(new TranspositionTable(1), tablebase);
+        int plies = 0;
+        MoveList moves = new MoveList();
+        while (true) {
+            moves.clear();
+            game.validMoves(game.getTeamTurn(), moves);
+            if (moves.isEmpty()) {
+                break;
+            }
+            SearchResult result = engine.search(game, SearchLimits.depth(2));
+            game.makeMove(result.move());
+            plies++;
+        }
+        Assertions.assertTrue(game.isInCheck(game.getTeamTurn()));
+        Assertions.assertEquals(expected, plies);
+    }
+
+    private static int longestWin(Endgame endgame) throws IOException {
+        byte[] file = Files.readAllBytes(directory.resolve(endgame.fileName()));
+        int size = (file.length - Tablebase.HEADER_BYTES) / 2;
+        int longest = 0;
+        for (int i = 0; i < size; i++) {
+            longest = Math.max(longest, file[Tablebase.HEADER_BYTES + i] & 0xFF);
+        }
+        return longest;
+    }
+
+    /**
+     * @return a legal position of a king and the piece against a king with
+     * either side strong and either to move, or null
+     */
+    private static ChessGame randomPosition(Random random, char piece) {
+        int[] squares = new int[3];
+        for (int i = 0; i < 3; i++) {
+            squares[i] = random.nextInt(64);
+        }
+        if (squares[0] == squares[1] || squares[0] == squares[2] || squares[1] == squares[2]
+                || (Attacks.king(squares[0]) & (1L << squares[1])) != 0
+                || (piece == 'P' && (squares[2] < 8 || squares[2] >= 56))) {
+            return null;
+        }
+        boolean whiteStrong = random.nextBoolean();
+        char[] board = new char[64];
+        Arrays.fill(board, '.');
+        board[squares[0]] = whiteStrong ? 'K' : 'k';
+        board[squares[1]] = whiteStrong ? 'k' : 'K';
+        board[squares[2]] = whiteStrong ? piece : Character.toLowerCase(piece);
+        StringBuilder fen = new StringBuilder();
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int column = 0; column < 8; column++) {
+                char c = board[row * 8 + column];
+                if (c == '.') {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(c);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 0) {
+                fen.append('/');
+            }
+        }
+        fen.append(random.nextBoolean() ? " w" : " b").append(" - - 0 1");
+        ChessGame game = Fen.parse(fen.toString());
+        ChessGame.TeamColor waiting = game.getTeamTurn() == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return game.isInCheck(waiting) ? null : game;
+    }
+
+    /**
+     * @return the score of the position worked out from the tablebase's
+     * scores of the positions after each move
+     */
+    private static int bestChild(ChessGame game) {
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+        if (moves.isEmpty()) {
+            return game.isInCheck(game.getTeamTurn()) ? -Engine.MATE : 0;
+        }
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            int score = game.getBoard().isInsufficientMaterial() ? 0 : tablebase.probe(game);
+            game.unmakeMove();
+            Assertions.assertNotEquals(Tablebase.NOT_FOUND, score);
+            best = Math.max(best, score > 0 ? -score + 1 : score < 0 ? -score - 1 : 0);
+        }
+        return best;
+    }
+}
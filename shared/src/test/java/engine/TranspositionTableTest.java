@@ -0,0 +1,114 @@
+package engine;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void storesAndFinds() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = PackedMove.encode(12, 28, PackedMove.DOUBLE_PAWN_PUSH);
+        table.store(42, move, -150, 7, TranspositionTable.LOWER);
+
+        long entry = table.probe(42);
+        Assertions.assertNotEquals(TranspositionTable.MISS, entry);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-150, TranspositionTable.score(entry, 3));
+        Assertions.assertEquals(7, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(43));
+        Assertions.assertEquals(0.5, table.hitRate());
+
+        // a bound without a move keeps the move stored before
+        table.store(42, Engine.NO_MOVE, 20, 8, TranspositionTable.UPPER);
+        Assertions.assertEquals(move, TranspositionTable.move(table.probe(42)));
+
+        table.clear();
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(42));
+        Assertions.assertEquals(1, table.getProbes());
+    }
+
+    @Test
+    public void mateScoresCountFromThePosition() {
+        TranspositionTable table = new TranspositionTable(1);
+        // mate in 3 plies from a position 5 plies below the root
+        table.store(1, Engine.NO_MOVE, TranspositionTable.toStored(Engine.MATE - 8, 5), 3, TranspositionTable.EXACT);
+        Assertions.assertEquals(Engine.MATE - 5, TranspositionTable.score(table.probe(1), 2));
+
+        table.store(2, Engine.NO_MOVE, TranspositionTable.toStored(-Engine.MATE + 6, 4), 1, TranspositionTable.EXACT);
+        Assertions.assertEquals(-Engine.MATE + 3, TranspositionTable.score(table.probe(2), 1));
+    }
+
+    @Test
+    public void replacesOldAndShallowEntries() {
+        TranspositionTable table = new TranspositionTable(1);
+        long buckets = table.capacity() / 4;
+        // keys equal in their low bits share a bucket of four entries
+        table.store(buckets, Engine.NO_MOVE, 0, 20, TranspositionTable.EXACT);
+        table.store(2 * buckets, Engine.NO_MOVE, 0, 2, TranspositionTable.EXACT);
+        table.store(3 * buckets, Engine.NO_MOVE, 0, 12, TranspositionTable.EXACT);
+        table.newSearch();
+        table.store(4 * buckets, Engine.NO_MOVE, 0, 1, TranspositionTable.EXACT);
+
+        table.store(5 * buckets, Engine.NO_MOVE, 0, 5, TranspositionTable.EXACT);
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(2 * buckets));
+        // a search of age counts as eight plies, so an old deep entry outlasts
+        // a new shallow one
+        table.store(6 * buckets, Engine.NO_MOVE, 0, 5, TranspositionTable.EXACT);
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(4 * buckets));
+        table.store(7 * buckets, Engine.NO_MOVE, 0, 5, TranspositionTable.EXACT);
+        Assertions.assertEquals(TranspositionTable.MISS, table.probe(3 * buckets));
+        Assertions.assertNotEquals(TranspositionTable.MISS, table.probe(buckets));
+    }
+
+    @Test
+    public void sharedWithoutLocks() throws InterruptedException {
+        // a small table, so threads keep overwriting each other's entries
+        TranspositionTable table = new TranspositionTable(1);
+        int[] bad = new int[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 500_000; i++) {
+                    long key = random.nextLong(1 << 20) * 0x9E3779B97F4A7C15L;
+                    long entry = table.probe(key);
+                    // every entry a key gets holds data derived from the key
+                    if (entry != TranspositionTable.MISS && TranspositionTable.move(entry) != (int) (key >>> 45)) {
+                        synchronized (bad) {
+                            bad[0]++;
+                        }
+                    }
+                    table.store(key, (int) (key >>> 45), (int) (key >>> 50), 1, TranspositionTable.EXACT);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(0, bad[0]);
+        Assertions.assertTrue(table.getHits() > 0);
+    }
+
+    @Test
+    public void engineSharesTable() {
+        TranspositionTable table = new TranspositionTable(4);
+        ChessGame game = Fen.parse(Perft.STANDARD.get(1).fen());
+        SearchResult first = new Engine(table).search(game, SearchLimits.depth(5));
+        Assertions.assertTrue(table.usagePerMille() > 0);
+        SearchResult second = new Engine(table).search(game, SearchLimits.depth(5));
+
+        Assertions.assertEquals(first.bestMove(), second.bestMove());
+        Assertions.assertTrue(second.nodes() < first.nodes(), second.nodes() + " >= " + first.nodes());
+    }
+}
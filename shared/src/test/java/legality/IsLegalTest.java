@@ -0,0 +1,68 @@
+package legality;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IsLegalTest {
+
+    @Test
+    public void matchesValidMoves() {
+        ChessGame game = new ChessGame();
+        Random random = new Random(19);
+        MoveList moves = new MoveList();
+        for (int ply = 0; ply < 400; ply++) {
+            moves.clear();
+            game.validMoves(game.getTeamTurn(), moves);
+            Set<ChessMove> valid = new HashSet<>(moves.toChessMoves());
+            ChessGame position = game;
+            for (ChessPosition from : game.getBoard().getPositions(game.getTeamTurn())) {
+                for (int row = 1; row <= 8; row++) {
+                    for (int column = 1; column <= 8; column++) {
+                        for (ChessPiece.PieceType promotion : new ChessPiece.PieceType[]{null, ChessPiece.PieceType.QUEEN}) {
+                            ChessMove move = new ChessMove(from, new ChessPosition(row, column), promotion);
+                            Assertions.assertEquals(valid.contains(move), position.isLegal(move),
+                                    () -> Fen.format(position) + " " + move);
+                        }
+                    }
+                }
+            }
+            if (moves.isEmpty()) {
+                game = new ChessGame();
+                continue;
+            }
+            game.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void rejectsIllegalMoves() {
+        ChessGame pinned = Fen.parse("4k3/4r3/8/8/8/8/4N3/4K3 w - - 0 1");
+        Assertions.assertFalse(pinned.isLegal(move(2, 5, 3, 3)));
+        Assertions.assertTrue(pinned.isLegal(move(1, 5, 1, 4)));
+
+        // taking en passant would leave both pawns off the row the rook is on
+        ChessGame enPassant = Fen.parse("4k3/8/8/K2pP2r/8/8/8/8 w - d6 0 1");
+        Assertions.assertFalse(enPassant.isLegal(move(5, 5, 6, 4)));
+        Assertions.assertTrue(enPassant.isLegal(move(5, 5, 6, 5)));
+
+        ChessGame castling = Fen.parse("4kr2/8/8/8/8/8/8/R3K2R w KQ - 0 1");
+        Assertions.assertFalse(castling.isLegal(move(1, 5, 1, 7)));
+        Assertions.assertTrue(castling.isLegal(move(1, 5, 1, 3)));
+
+        ChessGame promotion = Fen.parse("8/4P3/8/8/8/8/8/k1K5 w - - 0 1");
+        Assertions.assertFalse(promotion.isLegal(move(7, 5, 8, 5)));
+        Assertions.assertTrue(promotion.isLegal(new ChessMove(new ChessPosition(7, 5), new ChessPosition(8, 5),
+                ChessPiece.PieceType.KNIGHT)));
+        Assertions.assertFalse(promotion.isLegal(move(1, 1, 2, 1)));
+        Assertions.assertFalse(promotion.isLegal(move(0, 3, 1, 3)));
+    }
+
+    private static ChessMove move(int fromRow, int fromColumn, int toRow, int toColumn) {
+        return new ChessMove(new ChessPosition(fromRow, fromColumn), new ChessPosition(toRow, toColumn), null);
+    }
+}
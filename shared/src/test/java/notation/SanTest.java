@@ -0,0 +1,109 @@
+package notation;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SanTest {
+
+    @Test
+    public void roundTrip() {
+        for (Perft.Position position : Perft.STANDARD) {
+            roundTrip(Fen.parse(position.fen()), 2);
+        }
+    }
+
+    private static void roundTrip(ChessGame game, int depth) {
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            String san = San.format(game, move);
+            Assertions.assertTrue(seen.add(san), () -> "Two moves written " + san + " in " + Fen.format(game));
+            Assertions.assertEquals(move, San.parse(game, san), () -> san + " in " + Fen.format(game));
+            if (depth > 1) {
+                game.makeMove(move);
+                roundTrip(game, depth - 1);
+                game.unmakeMove();
+            }
+        }
+    }
+
+    @Test
+    public void formats() {
+        ChessGame kiwipete = Fen.parse(Perft.STANDARD.get(1).fen());
+        Assertions.assertEquals("O-O-O", format(kiwipete, "e1c1"));
+        Assertions.assertEquals("Bxa6", format(kiwipete, "e2a6"));
+        Assertions.assertEquals("dxe6", format(kiwipete, "d5e6"));
+        Assertions.assertEquals("Nxf7", format(kiwipete, "e5f7"));
+        Assertions.assertEquals("Rad1", format(Fen.parse("4k3/8/8/8/8/8/4K3/R6R w - - 0 1"), "a1d1"));
+        Assertions.assertEquals("R1a3", format(Fen.parse("4k3/8/8/R7/8/8/8/R3K3 w - - 0 1"), "a1a3"));
+        Assertions.assertEquals("Qh4e1", format(Fen.parse("8/k7/8/8/4Q2Q/8/8/1K5Q w - - 0 1"), "h4e1"));
+        Assertions.assertEquals("e8=N+", format(Fen.parse("8/4P3/3k4/8/8/8/8/4K3 w - - 0 1"), "e7e8n"));
+        Assertions.assertEquals("Qh5#", format(Fen.parse("rnbqkbnr/ppppp2p/5p2/6p1/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3"),
+                "d1h5"));
+    }
+
+    private static String format(ChessGame game, String coordinates) {
+        MoveList moves = new MoveList();
+        game.validMoves(game.getTeamTurn(), moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (Perft.toCoordinates(PackedMove.toChessMove(moves.get(i))).equals(coordinates)) {
+                return San.format(game, moves.get(i));
+            }
+        }
+        throw new AssertionError(coordinates + " is not legal");
+    }
+
+    @Test
+    public void readsLenientForms() {
+        ChessGame game = Fen.parse("5k2/4P3/8/8/8/8/8/R3K2R w KQ - 0 1");
+        Assertions.assertEquals(San.parse(game, "O-O"), San.parse(game, "0-0+"));
+        Assertions.assertEquals(San.parse(game, "O-O-O"), San.parse(game, "0-0-0"));
+        Assertions.assertEquals(San.parse(game, "e8=Q+"), San.parse(game, "e8Q!"));
+        Assertions.assertEquals(San.parse(game, "e8=B"), San.parse(game, "e8=b"));
+        Assertions.assertEquals(San.parse(game, "Rd1"), San.parse(game, "Ra1d1"));
+    }
+
+    @Test
+    public void rejectsBadMoves() {
+        ChessGame game = Fen.parse("4k3/8/8/8/8/8/4K3/R6R w - - 0 1");
+        for (String san : List.of("", "Rd", "Rd1", "O-O", "Nc3", "e4", "Rx", "Zd1", "R9d1")) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(game, san), san);
+        }
+    }
+
+    @Test
+    public void readsPgn() {
+        String pgn = """
+                [Event "Casual"]
+                [White "A \\"quoted\\" name"]
+                [Result "1-0"]
+
+                1. e4 {best by test} e5 2. Nf3 (2. f4 exf4 (2... d5)) Nc6 $1 3.Bb5 a6; to the end of the line
+                4. Ba4 1-0
+
+                % an escaped line
+                1. d4 d5 2. c4 *
+                [Event "No result"]
+                1. e4 c5""";
+        List<Pgn.Game> games = Pgn.parse(pgn);
+
+        Assertions.assertEquals(3, games.size());
+        Assertions.assertEquals("A \"quoted\" name", games.get(0).tags().get("White"));
+        Assertions.assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4"), games.get(0).moves());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, games.get(0).winner());
+        Assertions.assertEquals(List.of("d4", "d5", "c4"), games.get(1).moves());
+        Assertions.assertEquals("*", games.get(1).result());
+        Assertions.assertEquals(List.of("e4", "c5"), games.get(2).moves());
+
+        ChessGame end = Pgn.start(games.get(0));
+        Assertions.assertEquals(7, Pgn.play(games.get(0), 100, (position, move) -> end.makeMove(move)));
+        Assertions.assertEquals("r1bqkbnr/1ppp1ppp/p1n5/4p3/B3P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 1 1", Fen.format(end));
+    }
+}
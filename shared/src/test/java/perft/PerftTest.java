@@ -0,0 +1,36 @@
+package perft;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class PerftTest {
+
+    // deep enough to reach castling, en passant and promotion in every position
+    private static final int MAX_NODES = 200_000;
+
+    @Test
+    public void standardPositions() {
+        for (Perft.Position position : Perft.STANDARD) {
+            ChessGame game = Fen.parse(position.fen());
+            for (int depth = 1; depth <= position.counts().length; depth++) {
+                long expected = position.counts()[depth - 1];
+                if (expected > MAX_NODES) {
+                    break;
+                }
+                Assertions.assertEquals(expected, Perft.count(game, depth), position.name() + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    public void divideAddsUp() {
+        Perft.Position kiwipete = Perft.STANDARD.get(1);
+        Map<ChessMove, Long> counts = Perft.divide(kiwipete.fen(), 3, ForkJoinPool.commonPool());
+        Assertions.assertEquals(kiwipete.counts()[0], counts.size());
+        Assertions.assertEquals(kiwipete.counts()[2], counts.values().stream().mapToLong(Long::longValue).sum());
+    }
+}
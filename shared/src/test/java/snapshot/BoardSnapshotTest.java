@@ -0,0 +1,40 @@
+package snapshot;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BoardSnapshotTest {
+
+    @Test
+    public void snapshotDoesNotFollowTheGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        BoardSnapshot start = game.snapshot();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+
+        Assertions.assertEquals(ChessPiece.PieceType.PAWN, start.getPieceType(new ChessPosition(2, 5)));
+        Assertions.assertNull(start.getPiece(new ChessPosition(4, 5)));
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, start.getTeamTurn());
+        Assertions.assertEquals(new ChessGame().snapshot(), start);
+        Assertions.assertNotEquals(game.snapshot(), start);
+    }
+
+    @Test
+    public void toGameRestoresCastlingAndEnPassant() {
+        ChessGame game = Fen.parse("r3k2r/8/8/3pP3/8/8/8/R3K2R w Kq d6 0 1");
+        BoardSnapshot snapshot = game.snapshot();
+        Assertions.assertEquals(ChessBoard.WHITE_RIGHT_CASTLE | ChessBoard.BLACK_LEFT_CASTLE, snapshot.getCastlingRights());
+        Assertions.assertEquals(4, snapshot.getEnPassantColumn());
+
+        ChessGame copy = snapshot.toGame();
+        Assertions.assertEquals(game.positionKey(), copy.positionKey());
+        Assertions.assertEquals(game.getBoard(), copy.getBoard());
+        Assertions.assertNotSame(game.getBoard(), copy.getBoard());
+        Assertions.assertTrue(copy.validMoves(new ChessPosition(5, 5))
+                .contains(new ChessMove(new ChessPosition(5, 5), new ChessPosition(6, 4), null)));
+        Assertions.assertTrue(copy.validMoves(new ChessPosition(1, 5))
+                .contains(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 7), null)));
+        Assertions.assertFalse(copy.validMoves(new ChessPosition(1, 5))
+                .contains(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 3), null)));
+    }
+}
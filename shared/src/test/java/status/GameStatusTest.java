@@ -0,0 +1,139 @@
+package status;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GameStatusTest {
+
+    @Test
+    public void ongoing() {
+        GameStatus status = new ChessGame().getStatus();
+        Assertions.assertEquals(GameStatus.State.ONGOING, status.state());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, status.team());
+        Assertions.assertNull(status.winner());
+        Assertions.assertFalse(status.isOver());
+    }
+
+    @Test
+    public void check() {
+        GameStatus status = Fen.parse("rnbqkbnr/ppp2ppp/3p4/1B2p3/4P3/8/PPPP1PPP/RNBQK1NR b KQkq - 1 3").getStatus();
+        Assertions.assertEquals(GameStatus.State.CHECK, status.state());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, status.team());
+        Assertions.assertFalse(status.isOver());
+    }
+
+    @Test
+    public void checkmate() {
+        ChessGame game = Fen.parse("r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4");
+        GameStatus status = game.getStatus();
+        Assertions.assertEquals(GameStatus.State.CHECKMATE, status.state());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, status.winner());
+        Assertions.assertTrue(status.isOver());
+        Assertions.assertEquals(game.isInCheckmate(ChessGame.TeamColor.BLACK), status.isOver());
+    }
+
+    @Test
+    public void stalemate() {
+        ChessGame game = Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        GameStatus status = game.getStatus();
+        Assertions.assertEquals(GameStatus.State.STALEMATE, status.state());
+        Assertions.assertNull(status.winner());
+        Assertions.assertTrue(status.isOver());
+        Assertions.assertTrue(game.isInStalemate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8"};
+        for (int ply = 0; ply < 8; ply++) {
+            Assertions.assertEquals(GameStatus.State.ONGOING, game.getStatus().state(), "ply " + ply);
+            game.makeMove(move(shuffle[ply % 4]));
+        }
+        GameStatus status = game.getStatus();
+        Assertions.assertEquals(GameStatus.State.THREEFOLD_REPETITION, status.state());
+        Assertions.assertTrue(status.isOver());
+        Assertions.assertNull(status.winner());
+
+        game.unmakeMove();
+        Assertions.assertFalse(game.isThreefoldRepetition());
+    }
+
+    @Test
+    public void pawnMoveEndsRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] moves = {"g1f3", "g8f6", "f3g1", "f6g8", "e2e4", "e7e5", "g1f3", "g8f6", "f3g1", "f6g8"};
+        for (String move : moves) {
+            game.makeMove(move(move));
+        }
+        Assertions.assertFalse(game.isThreefoldRepetition());
+        Assertions.assertEquals(4, game.getHalfmoveClock());
+    }
+
+    @Test
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = Fen.parse("4k3/8/8/8/8/8/4P3/R3K3 w - - 99 80");
+        Assertions.assertEquals(GameStatus.State.ONGOING, game.getStatus().state());
+
+        game.makeMove(move("a1a7"));
+        Assertions.assertEquals(100, game.getHalfmoveClock());
+        Assertions.assertEquals(GameStatus.State.FIFTY_MOVE_RULE, game.getStatus().state());
+
+        game.unmakeMove();
+        Assertions.assertEquals(99, game.getHalfmoveClock());
+        game.makeMove(move("e2e4"));
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        Assertions.assertEquals(GameStatus.State.ONGOING, game.getStatus().state());
+    }
+
+    @Test
+    public void checkmateBeatsFiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = Fen.parse("k7/8/1K6/8/8/8/8/7R w - - 99 80");
+        game.makeMove(move("h1h8"));
+        Assertions.assertEquals(GameStatus.State.CHECKMATE, game.getStatus().state());
+    }
+
+    @Test
+    public void insufficientMaterial() {
+        String[] drawn = {
+                "4k3/8/8/8/8/8/8/4K3 w - - 0 1",
+                "4k3/8/8/8/8/8/8/2B1K3 w - - 0 1",
+                "4k3/8/8/8/8/8/8/4K1n1 b - - 0 1",
+                "2b1k3/8/8/8/8/8/8/3BK3 w - - 0 1"
+        };
+        for (String fen : drawn) {
+            Assertions.assertEquals(GameStatus.State.INSUFFICIENT_MATERIAL, Fen.parse(fen).getStatus().state(), fen);
+        }
+        String[] playable = {
+                "4k3/8/8/8/8/8/8/1NN1K3 w - - 0 1",
+                "4k3/8/8/8/8/8/8/2B1KB2 w - - 0 1",
+                "2b1k3/8/8/8/8/8/8/2B1K3 w - - 0 1",
+                "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1"
+        };
+        for (String fen : playable) {
+            Assertions.assertEquals(GameStatus.State.ONGOING, Fen.parse(fen).getStatus().state(), fen);
+        }
+    }
+
+    @Test
+    public void captureUpdatesMaterialSignature() throws InvalidMoveException {
+        ChessGame game = Fen.parse("4k3/8/8/8/8/8/4r3/3NK3 w - - 0 1");
+        long before = game.getBoard().getMaterialSignature();
+        Assertions.assertEquals(ChessBoard.signature(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK),
+                before - Fen.parse("4k3/8/8/8/8/8/8/3NK3 w - - 0 1").getBoard().getMaterialSignature());
+
+        game.makeMove(move("e1e2"));
+        Assertions.assertEquals(GameStatus.State.INSUFFICIENT_MATERIAL, game.getStatus().state());
+        game.unmakeMove();
+        Assertions.assertEquals(before, game.getBoard().getMaterialSignature());
+    }
+
+    private static ChessMove move(String coordinates) {
+        return new ChessMove(position(coordinates, 0), position(coordinates, 2), null);
+    }
+
+    private static ChessPosition position(String coordinates, int at) {
+        return new ChessPosition(coordinates.charAt(at + 1) - '0', coordinates.charAt(at) - 'a' + 1);
+    }
+}
@@ -0,0 +1,43 @@
+package teammoves;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+public class TeamMovesTest {
+
+    @Test
+    public void groupsMovesByOrigin() {
+        for (Perft.Position position : Perft.STANDARD) {
+            ChessGame game = Fen.parse(position.fen());
+            TeamMoves all = game.allValidMoves(game.getTeamTurn());
+            Assertions.assertEquals(position.counts()[0], all.size(), position.name());
+            Assertions.assertEquals(all.size(), all.offset(64));
+
+            long origins = 0;
+            for (ChessPosition piece : game.getBoard().getPositions(game.getTeamTurn())) {
+                int square = Bitboards.square(piece);
+                Assertions.assertEquals(new HashSet<>(game.validMoves(piece)), new HashSet<>(all.movesFrom(piece)),
+                        position.name() + " " + piece);
+                for (int i = all.offset(square); i < all.offset(square + 1); i++) {
+                    Assertions.assertEquals(square, PackedMove.from(all.get(i)));
+                }
+                if (all.count(square) > 0) {
+                    origins |= Bitboards.bit(square);
+                }
+            }
+            Assertions.assertEquals(origins, all.origins());
+        }
+    }
+
+    @Test
+    public void noMoves() {
+        ChessGame game = Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        TeamMoves all = game.allValidMoves(ChessGame.TeamColor.BLACK);
+        Assertions.assertTrue(all.isEmpty());
+        Assertions.assertEquals(0, all.origins());
+        Assertions.assertTrue(all.movesFrom(new ChessPosition(8, 8)).isEmpty());
+    }
+}
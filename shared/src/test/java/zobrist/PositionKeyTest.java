@@ -0,0 +1,72 @@
+package zobrist;
+
+import chess.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PositionKeyTest {
+
+    private static void move(ChessGame game, int startRow, int startCol, int endRow, int endCol)
+            throws InvalidMoveException {
+        game.makeMove(new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null));
+    }
+
+    @Test
+    public void transpositionsShareKey() throws InvalidMoveException {
+        ChessGame first = new ChessGame();
+        move(first, 1, 7, 3, 6);
+        move(first, 8, 7, 6, 6);
+        move(first, 1, 2, 3, 3);
+
+        ChessGame second = new ChessGame();
+        move(second, 1, 2, 3, 3);
+        move(second, 8, 7, 6, 6);
+        move(second, 1, 7, 3, 6);
+
+        Assertions.assertEquals(first.positionKey(), second.positionKey());
+        Assertions.assertNotEquals(new ChessGame().positionKey(), first.positionKey());
+    }
+
+    @Test
+    public void keyCoversTurnAndCastling() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        long start = game.positionKey();
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        Assertions.assertNotEquals(start, game.positionKey());
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+
+        // knights out and back is the same position
+        move(game, 1, 7, 3, 6);
+        move(game, 8, 7, 6, 6);
+        move(game, 3, 6, 1, 7);
+        move(game, 6, 6, 8, 7);
+        Assertions.assertEquals(start, game.positionKey());
+
+        // a rook out and back has lost its castling right
+        move(game, 2, 8, 4, 8);
+        move(game, 7, 8, 5, 8);
+        move(game, 1, 8, 2, 8);
+        move(game, 8, 8, 7, 8);
+        move(game, 2, 8, 1, 8);
+        move(game, 7, 8, 8, 8);
+        Assertions.assertNotEquals(start, game.positionKey());
+    }
+
+    @Test
+    public void unmakeRestoresKey() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        move(game, 2, 5, 4, 5);
+        move(game, 7, 1, 6, 1);
+        move(game, 4, 5, 5, 5);
+        long before = game.positionKey();
+
+        // d5 can be taken en passant, which is part of the key
+        move(game, 7, 4, 5, 4);
+        long afterDoubleMove = game.positionKey();
+        move(game, 5, 5, 6, 4);
+        game.unmakeMove();
+        Assertions.assertEquals(afterDoubleMove, game.positionKey());
+        game.unmakeMove();
+        Assertions.assertEquals(before, game.positionKey());
+    }
+}